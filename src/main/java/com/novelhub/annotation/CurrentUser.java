@@ -0,0 +1,24 @@
+package com.novelhub.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Current User
+ * Injects the authenticated caller ({@link com.novelhub.vo.request.AuthenticatedUser}) into a controller method,
+ * resolved once per request from the bearer token.
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUser {
+
+    /**
+     * Whether authentication is required
+     * true: throws when the token is missing/invalid; false: injects null for guests
+     */
+    boolean required() default true;
+}
@@ -0,0 +1,23 @@
+package com.novelhub.config;
+
+import com.novelhub.enums.ResponseCode;
+import com.novelhub.vo.response.AjaxResult;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Authentication Exception Handler
+ * {@link com.novelhub.annotation.CurrentUser} is resolved before the controller method (and its try/catch) runs,
+ * so an unauthenticated caller is turned into a 401 {@link AjaxResult} here instead of the default error page.
+ */
+@RestControllerAdvice
+public class AuthenticationExceptionHandler {
+
+    @ExceptionHandler(CurrentUserArgumentResolver.AuthenticationRequiredException.class)
+    public ResponseEntity<AjaxResult> handleAuthenticationRequired(CurrentUserArgumentResolver.AuthenticationRequiredException e) {
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                .body(AjaxResult.error(ResponseCode.UNAUTHORIZED.getCode(), e.getMessage()));
+    }
+}
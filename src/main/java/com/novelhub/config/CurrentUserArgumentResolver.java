@@ -0,0 +1,108 @@
+package com.novelhub.config;
+
+import com.novelhub.annotation.CurrentUser;
+import com.novelhub.service.UserService;
+import com.novelhub.utils.JwtUtil;
+import com.novelhub.vo.request.AuthenticatedUser;
+import com.novelhub.vo.response.UserProfileDTO;
+import io.jsonwebtoken.Claims;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolves {@link CurrentUser} parameters
+ * The user ID comes from the token's uid claim (tokens minted before the claim existed fall back to a
+ * username lookup); the account is then checked to still exist and be enabled through the user cache, so
+ * identifying the caller normally costs no DB round-trip. Deleting or disabling a user must evict it from
+ * UserCache, otherwise its tokens keep working until the cache entry expires.
+ * 每个请求只解析一次，结果保存在 request attribute 中
+ */
+@Slf4j
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private static final String REQUEST_USER_ATTRIBUTE = CurrentUserArgumentResolver.class.getName() + ".user";
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UserService userService;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && AuthenticatedUser.class.isAssignableFrom(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+        AuthenticatedUser user = resolve(request);
+
+        CurrentUser annotation = parameter.getParameterAnnotation(CurrentUser.class);
+        if (user == null && annotation != null && annotation.required()) {
+            throw new AuthenticationRequiredException();
+        }
+        return user;
+    }
+
+    /**
+     * Resolve the authenticated user of the request (at most once per request)
+     *
+     * @param request HttpServletRequest
+     * @return authenticated user, null if not authenticated or the user no longer exists
+     */
+    private AuthenticatedUser resolve(HttpServletRequest request) {
+        if (request == null) {
+            return null;
+        }
+        Object cached = request.getAttribute(REQUEST_USER_ATTRIBUTE);
+        if (cached instanceof AuthenticatedUser) {
+            return (AuthenticatedUser) cached;
+        }
+
+        Claims claims = jwtUtil.getClaims(request);
+        if (claims == null || claims.getSubject() == null || claims.getSubject().isEmpty()) {
+            return null;
+        }
+
+        String username = claims.getSubject();
+        Long userId = jwtUtil.getUserId(claims);
+        // Tokens minted without the uid claim are looked up by username
+        UserProfileDTO profile = userId != null
+                ? userService.getProfileById(userId)
+                : userService.getProfileByUsername(username);
+        if (profile == null) {
+            log.warn("Authenticated user not found: {}", username);
+            return null;
+        }
+        if (profile.getStatus() == null || profile.getStatus() != 1) {
+            log.warn("Authenticated user is disabled: {}", username);
+            return null;
+        }
+
+        AuthenticatedUser user = new AuthenticatedUser(profile.getUserId(), username);
+        request.setAttribute(REQUEST_USER_ATTRIBUTE, user);
+        return user;
+    }
+
+    /**
+     * Thrown when a required {@link CurrentUser} cannot be resolved: missing, expired or invalid token,
+     * or a deleted / disabled account (mapped to HTTP 401 by {@link AuthenticationExceptionHandler})
+     */
+    public static class AuthenticationRequiredException extends RuntimeException {
+
+        public AuthenticationRequiredException() {
+            super("Authentication required, please login again");
+        }
+    }
+}
@@ -1,25 +1,107 @@
 package com.novelhub.config;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 /**
  * RestTemplate Configuration
- * Provides a default RestTemplate bean for dependency injection
+ * One managed outbound HTTP subsystem for all external integrations.
+ * Each integration gets its own JDK HttpClient (= its own connection pool per host), HTTP/2 negotiated via ALPN
+ * with HTTP/1.1 fallback, and its own connect/read timeouts.
+ * RestTemplateBuilder registers the Micrometer observation, so every call is recorded as
+ * http.client.requests (latency) and http.client.requests.active (in-flight, i.e. saturation) tagged by host.
+ * Idle connection keep-alive is the JVM-wide -Djdk.httpclient.keepalive.timeout set in the startup command
+ * (Dockerfile / start.bat), since the JDK reads it once when the first HttpClient is created.
  */
+@Slf4j
 @Configuration
 public class RestTemplateConfig {
 
     /**
-     * Create a default RestTemplate bean
-     * Uses JDK's HttpURLConnection as the underlying HTTP client
-     * 
-     * @return RestTemplate instance
+     * Default RestTemplate for ad-hoc calls without a dedicated integration
      */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    @Primary
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+                                     @Value("${http.client.default.connect-timeout:5s}") Duration connectTimeout,
+                                     @Value("${http.client.default.read-timeout:30s}") Duration readTimeout) {
+        return build(builder, "default", connectTimeout, readTimeout);
+    }
+
+    /**
+     * Replicate API (prediction create/status)
+     */
+    @Bean
+    public RestTemplate replicateRestTemplate(RestTemplateBuilder builder,
+                                              @Value("${http.client.replicate.connect-timeout:5s}") Duration connectTimeout,
+                                              @Value("${http.client.replicate.read-timeout:30s}") Duration readTimeout) {
+        return build(builder, "replicate", connectTimeout, readTimeout);
+    }
+
+    /**
+     * ImgBB image upload
+     */
+    @Bean
+    public RestTemplate imgbbRestTemplate(RestTemplateBuilder builder,
+                                          @Value("${http.client.imgbb.connect-timeout:5s}") Duration connectTimeout,
+                                          @Value("${http.client.imgbb.read-timeout:60s}") Duration readTimeout) {
+        return build(builder, "imgbb", connectTimeout, readTimeout);
+    }
+
+    /**
+     * CoinGecko price API
+     */
+    @Bean
+    public RestTemplate coingeckoRestTemplate(RestTemplateBuilder builder,
+                                              @Value("${http.client.coingecko.connect-timeout:3s}") Duration connectTimeout,
+                                              @Value("${http.client.coingecko.read-timeout:5s}") Duration readTimeout) {
+        return build(builder, "coingecko", connectTimeout, readTimeout);
     }
-}
 
+    /**
+     * Binance Pay merchant API
+     */
+    @Bean
+    public RestTemplate binancePayRestTemplate(RestTemplateBuilder builder,
+                                               @Value("${http.client.binance-pay.connect-timeout:5s}") Duration connectTimeout,
+                                               @Value("${http.client.binance-pay.read-timeout:10s}") Duration readTimeout) {
+        return build(builder, "binance-pay", connectTimeout, readTimeout);
+    }
+
+    /**
+     * Google OAuth tokeninfo
+     */
+    @Bean
+    public RestTemplate googleRestTemplate(RestTemplateBuilder builder,
+                                           @Value("${http.client.google.connect-timeout:5s}") Duration connectTimeout,
+                                           @Value("${http.client.google.read-timeout:10s}") Duration readTimeout) {
+        return build(builder, "google", connectTimeout, readTimeout);
+    }
+
+    /**
+     * Build a RestTemplate backed by a dedicated pooled HttpClient
+     * No interceptors are added so request bodies are streamed instead of buffered.
+     */
+    private RestTemplate build(RestTemplateBuilder builder, String name, Duration connectTimeout, Duration readTimeout) {
+        HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        log.info("Outbound HTTP client [{}]: connectTimeout={}, readTimeout={}", name, connectTimeout, readTimeout);
+        return builder.requestFactory(() -> requestFactory).build();
+    }
+}
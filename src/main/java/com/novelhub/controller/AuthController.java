@@ -3,8 +3,10 @@ package com.novelhub.controller;
 import com.alibaba.fastjson2.JSONObject;
 import jakarta.servlet.http.HttpServletRequest;
 import com.novelhub.service.GoogleAuthService;
+import com.novelhub.service.LoginActivityRecorder;
 import com.novelhub.service.UserService;
 import com.novelhub.utils.JwtUtil;
+import com.novelhub.utils.PasswordUtil;
 import com.novelhub.vo.request.AuthRequest;
 import com.novelhub.vo.response.AjaxResult;
 import com.novelhub.vo.response.UserResponse;
@@ -34,6 +36,9 @@ public class AuthController {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private LoginActivityRecorder loginActivityRecorder;
+
     /**
      * User Registration
      *
@@ -66,7 +71,7 @@ public class AuthController {
             }
 
             // Generate tokens
-            String accessToken = jwtUtil.generateToken(user.getUsername());
+            String accessToken = jwtUtil.generateToken(user.getUsername(), Long.valueOf(user.getObjectId()));
             String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
 
             AjaxResult result = AjaxResult.success("Registration successful")
@@ -75,6 +80,9 @@ public class AuthController {
                     .put("refreshToken", refreshToken);
 
             return ResponseEntity.ok(result);
+        } catch (PasswordUtil.PasswordHashingBusyException e) {
+            return ResponseEntity.status(429)
+                    .body(AjaxResult.error(429, e.getMessage()));
         } catch (RuntimeException e) {
             log.error("Registration error", e);
             return ResponseEntity.badRequest()
@@ -108,7 +116,7 @@ public class AuthController {
      * @return response with user info and tokens
      */
     @PostMapping("/login")
-    public ResponseEntity<AjaxResult> login(@RequestBody AuthRequest request) {
+    public ResponseEntity<AjaxResult> login(@RequestBody AuthRequest request, HttpServletRequest httpRequest) {
         log.info("Login request for username: {}", request.getUsername());
 
         // Validate input
@@ -126,8 +134,12 @@ public class AuthController {
                         .body(AjaxResult.error(401, "Invalid username or password"));
             }
 
+            // Record login (last login + login log are written asynchronously)
+            Long userId = Long.valueOf(user.getObjectId());
+            loginActivityRecorder.recordLogin(userId, httpRequest);
+
             // Generate tokens
-            String accessToken = jwtUtil.generateToken(user.getUsername());
+            String accessToken = jwtUtil.generateToken(user.getUsername(), userId);
             String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
 
             AjaxResult result = AjaxResult.success("Login successful")
@@ -136,6 +148,9 @@ public class AuthController {
                     .put("refreshToken", refreshToken);
 
             return ResponseEntity.ok(result);
+        } catch (PasswordUtil.PasswordHashingBusyException e) {
+            return ResponseEntity.status(429)
+                    .body(AjaxResult.error(429, e.getMessage()));
         } catch (Exception e) {
             log.error("Login error", e);
             return ResponseEntity.internalServerError()
@@ -160,7 +175,13 @@ public class AuthController {
 
         try {
             String username = jwtUtil.getUsername(request.getRefreshToken());
-            String newAccessToken = jwtUtil.generateToken(username);
+            // Refresh tokens carry no uid claim; resolve it once here so access tokens never need a lookup
+            Long userId = userService.getUserIdByUsername(username);
+            if (userId == null) {
+                return ResponseEntity.status(401)
+                        .body(AjaxResult.error(401, "Invalid refresh token"));
+            }
+            String newAccessToken = jwtUtil.generateToken(username, userId);
             String newRefreshToken = jwtUtil.generateRefreshToken(username);
 
             AjaxResult result = AjaxResult.success("Token refreshed")
@@ -208,6 +229,9 @@ public class AuthController {
             }
 
             return ResponseEntity.ok(AjaxResult.success("Password changed successfully"));
+        } catch (PasswordUtil.PasswordHashingBusyException e) {
+            return ResponseEntity.status(429)
+                    .body(AjaxResult.error(429, e.getMessage()));
         } catch (RuntimeException e) {
             log.error("Password change error", e);
             return ResponseEntity.badRequest()
@@ -1,12 +1,11 @@
 package com.novelhub.controller;
 
+import com.novelhub.annotation.CurrentUser;
 import com.novelhub.service.BinancePayService;
-import com.novelhub.service.UserService;
-import com.novelhub.utils.JwtUtil;
+import com.novelhub.vo.request.AuthenticatedUser;
 import com.novelhub.vo.request.CreateBinancePayOrderRequest;
 import com.novelhub.vo.response.AjaxResult;
 import com.novelhub.vo.response.CreateBinancePayOrderResponse;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
@@ -25,8 +24,6 @@ import java.util.Map;
 public class BinancePayController {
 
     private final BinancePayService binancePayService;
-    private final UserService userService;
-    private final JwtUtil jwtUtil;
 
     /**
      * 创建 Binance Pay 订单（生成二维码）
@@ -37,18 +34,13 @@ public class BinancePayController {
     @PostMapping("/create-order")
     public ResponseEntity<AjaxResult> createOrder(
             @RequestBody CreateBinancePayOrderRequest request,
-            HttpServletRequest httpRequest) {
+            @CurrentUser AuthenticatedUser currentUser) {
 
         try {
             log.info("Creating Binance Pay order for planId: {}", request.getPlanId());
 
             // 从 token 中获取用户 ID
-            String username = jwtUtil.validUsername(httpRequest);
-            var user = userService.getUserByUsername(username);
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
-            Long userId = user.getUserId();
+            Long userId = currentUser.getUserId();
 
             CreateBinancePayOrderResponse response = binancePayService.createOrder(
                 request.getPlanId(),
@@ -1,27 +1,40 @@
 package com.novelhub.controller;
 
 import com.alibaba.fastjson2.JSON;
+import com.novelhub.annotation.CurrentUser;
 import com.novelhub.enums.FunctionConfig;
 import com.novelhub.enums.PointsType;
 import com.novelhub.enums.ResponseCode;
 import com.novelhub.service.BusinessService;
+import com.novelhub.service.FunctionCatalog;
+import com.novelhub.service.FunctionUsageRecorder;
 import com.novelhub.service.ImageUploadService;
+import com.novelhub.service.PredictionEventHub;
+import com.novelhub.service.ReplicatePredictionEngine;
 import com.novelhub.service.ReplicateService;
 import com.novelhub.utils.FingerprintUtil;
 import com.novelhub.utils.JwtUtil;
+import com.novelhub.vo.request.AuthenticatedUser;
 import com.novelhub.vo.response.AjaxResult;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Business Controller
@@ -44,9 +57,21 @@ public class BusinessController {
     @Autowired
     private ReplicateService replicateService;
 
+    @Autowired
+    private ReplicatePredictionEngine replicateEngine;
+
+    @Autowired
+    private PredictionEventHub predictionEventHub;
+
     @Autowired
     private ImageUploadService imageUploadService;
 
+    @Autowired
+    private FunctionUsageRecorder functionUsageRecorder;
+
+    @Autowired
+    private FunctionCatalog functionCatalog;
+
     /**
      * Demo test function
      * Priority: Token (authenticated) > Fingerprint (guest) > Error
@@ -56,6 +81,7 @@ public class BusinessController {
     @PostMapping("/demo-test")
     public ResponseEntity<AjaxResult> demoTest(
             HttpServletRequest request,
+            @CurrentUser(required = false) AuthenticatedUser currentUser,
             @RequestBody(required = false) Map<String, Object> requestData) {
         try {
             // Get function configuration
@@ -113,14 +139,10 @@ public class BusinessController {
                 // TODO: Actually deduct points from user account in database
                 // pointService.deductPoints(userId, pointsType, pointsDeducted);
                 
-                // TODO: Log function usage to database
-                // FunctionUsageLog log = FunctionUsageLog.builder()
-                //     .userId(userId)
-                //     .functionType(config.getFunctionType())  // integer: 1001, 1002, etc.
-                //     .pointsType(pointsType)                   // integer: 1 (free) or 2 (fixed)
-                //     .pointsCost(pointsDeducted)
-                //     .build();
-                // usageLogMapper.insert(log);
+                // Log function usage (buffered, written in batches)
+                functionUsageRecorder.recordUser(currentUserId(currentUser, username), config.getFunctionType(),
+                    pointsType, pointsDeducted, requestData != null ? JSON.toJSONString(requestData) : null,
+                    FunctionUsageRecorder.STATUS_SUCCESS, null);
                 
                 Map<String, Object> result = new HashMap<>();
                 result.put("authenticated", true);
@@ -164,14 +186,9 @@ public class BusinessController {
                                                               errorData));
                 }
                 
-                // TODO: Log guest function usage to database
-                // FunctionUsageLog log = FunctionUsageLog.builder()
-                //     .fingerprint(fingerprint)
-                //     .functionType(config.getFunctionType())          // integer: 1001, 1002, etc.
-                //     .pointsType(config.getGuestPointsType())         // integer: 0 (trial)
-                //     .pointsCost(0)
-                //     .build();
-                // usageLogMapper.insert(log);
+                // Log guest function usage (buffered, written in batches)
+                functionUsageRecorder.recordGuest(fingerprint, config.getFunctionType(), config.getGuestPointsType(),
+                    requestData != null ? JSON.toJSONString(requestData) : null, FunctionUsageRecorder.STATUS_SUCCESS, null);
                 
                 // Execute business logic for guest
                 Map<String, Object> result = new HashMap<>();
@@ -245,74 +262,19 @@ public class BusinessController {
 
     /**
      * Get all available functions and their configurations
-     * No authentication required
+     * No authentication required; pre-serialized at startup, answers 304 when If-None-Match matches
      */
     @GetMapping("/functions")
-    public ResponseEntity<AjaxResult> getFunctions() {
-        try {
-            Map<String, Object> functions = new HashMap<>();
-            
-            for (FunctionConfig config : FunctionConfig.values()) {
-                Map<String, Object> funcInfo = new HashMap<>();
-                funcInfo.put("functionType", config.getFunctionType());
-                funcInfo.put("functionName", config.getFunctionName());
-                
-                // Scene information
-                Map<String, Object> sceneInfo = new HashMap<>();
-                sceneInfo.put("code", config.getScene());
-                sceneInfo.put("name", config.getSceneType().getName());
-                sceneInfo.put("description", config.getSceneType().getDescription());
-                funcInfo.put("scene", sceneInfo);
-                
-                // Model information
-                Map<String, Object> modelInfo = new HashMap<>();
-                modelInfo.put("code", config.getModel());
-                modelInfo.put("name", config.getModelType().getName());
-                modelInfo.put("provider", config.getModelType().getProvider());
-                modelInfo.put("description", config.getModelType().getDescription());
-                funcInfo.put("model", modelInfo);
-                
-                funcInfo.put("guestDailyLimit", config.getGuestDailyLimit());
-                funcInfo.put("freePointsCost", config.getFreePointsCost());
-                funcInfo.put("fixedPointsCost", config.getFixedPointsCost());
-                funcInfo.put("costDisplay", config.getCostDisplay());
-                
-                // Pricing details with points type codes
-                Map<String, Object> pricing = new HashMap<>();
-                if (config.getFreePointsCost() > 0) {
-                    Map<String, Object> freePricing = new HashMap<>();
-                    freePricing.put("cost", config.getFreePointsCost());
-                    freePricing.put("type", PointsType.FREE.getCode());  // 1
-                    freePricing.put("typeName", PointsType.FREE.getName());
-                    pricing.put("silverCoins", freePricing);
-                }
-                if (config.getFixedPointsCost() > 0) {
-                    Map<String, Object> fixedPricing = new HashMap<>();
-                    fixedPricing.put("cost", config.getFixedPointsCost());
-                    fixedPricing.put("type", PointsType.FIXED.getCode());  // 2
-                    fixedPricing.put("typeName", PointsType.FIXED.getName());
-                    pricing.put("goldCoins", fixedPricing);
-                }
-                if (config.getGuestDailyLimit() > 0) {
-                    Map<String, Object> trialPricing = new HashMap<>();
-                    trialPricing.put("dailyLimit", config.getGuestDailyLimit());
-                    trialPricing.put("type", PointsType.TRIAL.getCode());  // 0
-                    trialPricing.put("typeName", PointsType.TRIAL.getName());
-                    pricing.put("trial", trialPricing);
-                }
-                funcInfo.put("pricing", pricing);
-                
-                functions.put(config.getFunctionName(), funcInfo);
-            }
-            
-            return ResponseEntity.ok(AjaxResult.success(functions));
-            
-        } catch (Exception e) {
-            log.error("Error getting functions", e);
-            return ResponseEntity.internalServerError().body(
-                AjaxResult.error("Failed to get functions: " + e.getMessage())
-            );
+    public ResponseEntity<byte[]> getFunctions(WebRequest webRequest) {
+        String eTag = functionCatalog.getETag();
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
         }
+        return ResponseEntity.ok()
+            .eTag(eTag)
+            .cacheControl(CacheControl.noCache())
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(functionCatalog.getBody());
     }
 
     /**
@@ -321,33 +283,34 @@ public class BusinessController {
      * Priority: Token (authenticated) > Fingerprint (guest) > Error
      */
     @PostMapping("/nano-banana")
-    public ResponseEntity<AjaxResult> nanoBanana(
+    public CompletableFuture<ResponseEntity<AjaxResult>> nanoBanana(
             HttpServletRequest request,
+            @CurrentUser(required = false) AuthenticatedUser currentUser,
             @RequestBody(required = false) Map<String, Object> requestData) {
         try {
             // Get function configuration
             FunctionConfig config = businessService.getFunctionConfig("nano-banana");
             if (config == null) {
-                return ResponseEntity.ok(
+                return CompletableFuture.completedFuture(ResponseEntity.ok(
                     AjaxResult.error(ResponseCode.FUNCTION_CONFIG_NOT_FOUND.getCode(), 
                                    ResponseCode.FUNCTION_CONFIG_NOT_FOUND.getMessage(), null)
-                );
+                ));
             }
 
             // Validate request data
             if (requestData == null) {
-                return ResponseEntity.ok(
+                return CompletableFuture.completedFuture(ResponseEntity.ok(
                     AjaxResult.error(ResponseCode.BAD_REQUEST.getCode(), 
                                    "Request data is required", null)
-                );
+                ));
             }
 
             String prompt = (String) requestData.get("prompt");
             if (prompt == null || prompt.trim().isEmpty()) {
-                return ResponseEntity.ok(
+                return CompletableFuture.completedFuture(ResponseEntity.ok(
                     AjaxResult.error(ResponseCode.BAD_REQUEST.getCode(), 
                                    "Prompt is required", null)
-                );
+                ));
             }
 
             // Support both single image URL (backward compatibility) and multiple image URLs
@@ -370,6 +333,8 @@ public class BusinessController {
                 imageUrls.add(imageUrl);
             }
             String aspectRatio = (String) requestData.get("aspectRatio");
+            // async=true: return right after the prediction is created, progress is pushed over SSE
+            boolean async = Boolean.TRUE.equals(requestData.get("async"));
 
             // Step 1: Try to get username from JWT token (returns null if not authenticated)
             String username = jwtUtil.getUsername(request);
@@ -390,9 +355,9 @@ public class BusinessController {
                     errorData.put("required", config.getCostDisplay());
                     errorData.put("yourFreePoints", userFreePoints);
                     errorData.put("yourFixedPoints", userFixedPoints);
-                    return ResponseEntity.ok(AjaxResult.error(ResponseCode.INSUFFICIENT_POINTS.getCode(), 
+                    return CompletableFuture.completedFuture(ResponseEntity.ok(AjaxResult.error(ResponseCode.INSUFFICIENT_POINTS.getCode(), 
                                                               ResponseCode.INSUFFICIENT_POINTS.getMessage(), 
-                                                              errorData));
+                                                              errorData)));
                 }
                 
                 // Determine which type of points to deduct
@@ -404,9 +369,9 @@ public class BusinessController {
                     errorData.put("required", config.getCostDisplay());
                     errorData.put("yourFreePoints", userFreePoints);
                     errorData.put("yourFixedPoints", userFixedPoints);
-                    return ResponseEntity.ok(AjaxResult.error(ResponseCode.INSUFFICIENT_POINTS.getCode(), 
+                    return CompletableFuture.completedFuture(ResponseEntity.ok(AjaxResult.error(ResponseCode.INSUFFICIENT_POINTS.getCode(), 
                                                               ResponseCode.INSUFFICIENT_POINTS.getMessage(), 
-                                                              errorData));
+                                                              errorData)));
                 }
                 
                 int pointsDeducted = pointsType == PointsType.FREE.getCode() 
@@ -416,39 +381,61 @@ public class BusinessController {
                 // TODO: Actually deduct points from user account in database
                 // pointService.deductPoints(userId, pointsType, pointsDeducted);
                 
-                // Call Replicate API
-                Map<String, Object> apiResult = replicateService.generateImage(prompt, imageUrls, aspectRatio);
-                
-                if (!(Boolean) apiResult.get("success")) {
-                    // API call failed - don't deduct points
-                    String error = (String) apiResult.get("error");
-                    log.error("Replicate API call failed: {}", error);
-                    return ResponseEntity.ok(
-                        AjaxResult.error(ResponseCode.INTERNAL_SERVER_ERROR.getCode(),
-                                       "Image generation failed: " + error,
-                                       null)
-                    );
-                }
-                
-                // TODO: Log function usage to database
-                
-                Map<String, Object> result = new HashMap<>();
-                result.put("authenticated", true);
-                result.put("username", username);
-                result.put("message", "Image generated successfully");
-                result.put("imageUrl", apiResult.get("imageUrl"));
-                result.put("predictionId", apiResult.get("predictionId"));
-                result.put("timestamp", System.currentTimeMillis());
-                result.put("functionType", config.getFunctionType());
-                result.put("pointsDeducted", pointsDeducted);
-                result.put("pointsType", pointsType);
-                result.put("pointsTypeName", PointsType.findByCode(pointsType).getName());
-                result.put("remainingFreePoints", pointsType == PointsType.FREE.getCode() 
-                    ? userFreePoints - pointsDeducted : userFreePoints);
-                result.put("remainingFixedPoints", pointsType == PointsType.FIXED.getCode() 
-                    ? userFixedPoints - pointsDeducted : userFixedPoints);
-                
-                return ResponseEntity.ok(AjaxResult.success(result));
+                Long userId = currentUserId(currentUser, username);
+                String requestParams = nanoBananaParams(prompt, imageUrls, aspectRatio, async);
+                // Usage is recorded with the final result (for async=true when the prediction finishes, not at submit)
+                Consumer<Map<String, Object>> recordUsage = finalResult -> {
+                    if (Boolean.TRUE.equals(finalResult.get("success"))) {
+                        functionUsageRecorder.recordUser(userId, config.getFunctionType(), pointsType, pointsDeducted,
+                            requestParams, FunctionUsageRecorder.STATUS_SUCCESS, null);
+                    } else {
+                        // API call failed - don't deduct points
+                        functionUsageRecorder.recordUser(userId, config.getFunctionType(), pointsType, 0,
+                            requestParams, FunctionUsageRecorder.STATUS_FAILED, (String) finalResult.get("error"));
+                    }
+                };
+                
+                // Call Replicate API (non-blocking, completed by the shared poller)
+                CompletableFuture<Map<String, Object>> generation = async
+                    ? replicateEngine.submitImage(prompt, imageUrls, aspectRatio, recordUsage)
+                    : replicateEngine.generateImage(prompt, imageUrls, aspectRatio);
+                return generation.thenApply(apiResult -> {
+                    if (!async) {
+                        recordUsage.accept(apiResult);
+                    }
+                    if (!(Boolean) apiResult.get("success")) {
+                        String error = (String) apiResult.get("error");
+                        log.error("Replicate API call failed: {}", error);
+                        return ResponseEntity.ok(
+                            AjaxResult.error(ResponseCode.INTERNAL_SERVER_ERROR.getCode(),
+                                           "Image generation failed: " + error,
+                                           null)
+                        );
+                    }
+                    
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("authenticated", true);
+                    result.put("username", username);
+                    result.put("message", async ? "Image generation started" : "Image generated successfully");
+                    result.put("imageUrl", apiResult.get("imageUrl"));
+                    result.put("predictionId", apiResult.get("predictionId"));
+                    if (async) {
+                        // Subscribe to progress via SSE instead of polling the status endpoint
+                        result.put("status", apiResult.get("status"));
+                        result.put("eventsUrl", "/api/business/nano-banana/events/" + apiResult.get("predictionId"));
+                    }
+                    result.put("timestamp", System.currentTimeMillis());
+                    result.put("functionType", config.getFunctionType());
+                    result.put("pointsDeducted", pointsDeducted);
+                    result.put("pointsType", pointsType);
+                    result.put("pointsTypeName", PointsType.findByCode(pointsType).getName());
+                    result.put("remainingFreePoints", pointsType == PointsType.FREE.getCode() 
+                        ? userFreePoints - pointsDeducted : userFreePoints);
+                    result.put("remainingFixedPoints", pointsType == PointsType.FIXED.getCode() 
+                        ? userFixedPoints - pointsDeducted : userFixedPoints);
+                    
+                    return ResponseEntity.ok(AjaxResult.success(result));
+                });
             }
             
             // Step 2: No token, try to get fingerprint for guest access
@@ -470,41 +457,59 @@ public class BusinessController {
                     errorData.put("dailyLimit", usageResult.get("dailyLimit"));
                     errorData.put("remaining", usageResult.get("remaining"));
                     errorData.put("requireLogin", true);
-                    return ResponseEntity.ok(AjaxResult.error(ResponseCode.EXCEED_DAILY_LIMIT.getCode(), 
+                    return CompletableFuture.completedFuture(ResponseEntity.ok(AjaxResult.error(ResponseCode.EXCEED_DAILY_LIMIT.getCode(), 
                                                               ResponseCode.EXCEED_DAILY_LIMIT.getMessage(), 
-                                                              errorData));
-                }
-                
-                // TODO: Log guest function usage to database
-                
-                // Call Replicate API
-                Map<String, Object> apiResult = replicateService.generateImage(prompt, imageUrls, aspectRatio);
-                
-                if (!(Boolean) apiResult.get("success")) {
-                    // API call failed
-                    String error = (String) apiResult.get("error");
-                    log.error("Replicate API call failed: {}", error);
-                    return ResponseEntity.ok(
-                        AjaxResult.error(ResponseCode.INTERNAL_SERVER_ERROR.getCode(),
-                                       "Image generation failed: " + error,
-                                       null)
-                    );
+                                                              errorData)));
                 }
                 
-                // Execute business logic for guest
-                Map<String, Object> result = new HashMap<>();
-                result.put("authenticated", false);
-                result.put("fingerprint", fingerprint);
-                result.put("message", "Image generated successfully");
-                result.put("imageUrl", apiResult.get("imageUrl"));
-                result.put("predictionId", apiResult.get("predictionId"));
-                result.put("timestamp", System.currentTimeMillis());
-                result.put("functionType", config.getFunctionType());
-                result.put("pointsType", config.getGuestPointsType());
-                result.put("pointsTypeName", PointsType.TRIAL.getName());
-                result.put("usageInfo", usageResult);
-                
-                return ResponseEntity.ok(AjaxResult.success(result));
+                String requestParams = nanoBananaParams(prompt, imageUrls, aspectRatio, async);
+                // Usage is recorded with the final result (for async=true when the prediction finishes, not at submit)
+                Consumer<Map<String, Object>> recordUsage = finalResult -> {
+                    boolean succeeded = Boolean.TRUE.equals(finalResult.get("success"));
+                    functionUsageRecorder.recordGuest(fingerprint, config.getFunctionType(), config.getGuestPointsType(),
+                        requestParams, succeeded ? FunctionUsageRecorder.STATUS_SUCCESS : FunctionUsageRecorder.STATUS_FAILED,
+                        succeeded ? null : (String) finalResult.get("error"));
+                };
+                
+                // Call Replicate API (non-blocking, completed by the shared poller)
+                CompletableFuture<Map<String, Object>> generation = async
+                    ? replicateEngine.submitImage(prompt, imageUrls, aspectRatio, recordUsage)
+                    : replicateEngine.generateImage(prompt, imageUrls, aspectRatio);
+                return generation.thenApply(apiResult -> {
+                    if (!async) {
+                        recordUsage.accept(apiResult);
+                    }
+                    if (!(Boolean) apiResult.get("success")) {
+                        // API call failed
+                        String error = (String) apiResult.get("error");
+                        log.error("Replicate API call failed: {}", error);
+                        return ResponseEntity.ok(
+                            AjaxResult.error(ResponseCode.INTERNAL_SERVER_ERROR.getCode(),
+                                           "Image generation failed: " + error,
+                                           null)
+                        );
+                    }
+                    
+                    // Execute business logic for guest
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("authenticated", false);
+                    result.put("fingerprint", fingerprint);
+                    result.put("message", async ? "Image generation started" : "Image generated successfully");
+                    result.put("imageUrl", apiResult.get("imageUrl"));
+                    result.put("predictionId", apiResult.get("predictionId"));
+                    if (async) {
+                        // Subscribe to progress via SSE instead of polling the status endpoint
+                        result.put("status", apiResult.get("status"));
+                        result.put("eventsUrl", "/api/business/nano-banana/events/" + apiResult.get("predictionId"));
+                    }
+                    result.put("timestamp", System.currentTimeMillis());
+                    result.put("functionType", config.getFunctionType());
+                    result.put("pointsType", config.getGuestPointsType());
+                    result.put("pointsTypeName", PointsType.TRIAL.getName());
+                    result.put("usageInfo", usageResult);
+                    
+                    return ResponseEntity.ok(AjaxResult.success(result));
+                });
             }
             
             // Step 3: No token and no fingerprint - quota exhausted
@@ -513,17 +518,17 @@ public class BusinessController {
             errorData.put("code", ResponseCode.QUOTA_EXHAUSTED.getName());
             errorData.put("message", ResponseCode.QUOTA_EXHAUSTED.getMessage());
             errorData.put("requireLogin", true);
-            return ResponseEntity.ok(AjaxResult.error(ResponseCode.QUOTA_EXHAUSTED.getCode(), 
+            return CompletableFuture.completedFuture(ResponseEntity.ok(AjaxResult.error(ResponseCode.QUOTA_EXHAUSTED.getCode(), 
                                                       ResponseCode.QUOTA_EXHAUSTED.getMessage(), 
-                                                      errorData));
+                                                      errorData)));
             
         } catch (Exception e) {
             log.error("Error executing nano banana", e);
-            return ResponseEntity.ok(
+            return CompletableFuture.completedFuture(ResponseEntity.ok(
                 AjaxResult.error(ResponseCode.INTERNAL_SERVER_ERROR.getCode(), 
                                ResponseCode.INTERNAL_SERVER_ERROR.getMessage() + ": " + e.getMessage(), 
                                null)
-            );
+            ));
         }
     }
 
@@ -535,7 +540,8 @@ public class BusinessController {
     public ResponseEntity<AjaxResult> getPredictionStatus(
             @PathVariable String predictionId) {
         try {
-            Map<String, Object> result = replicateService.getPredictionStatus(predictionId);
+            // 优先读取 webhook/poller 写入的状态存储，必要时才请求 Replicate
+            Map<String, Object> result = replicateEngine.getPredictionStatus(predictionId);
             
             if (!(Boolean) result.get("success")) {
                 String error = (String) result.get("error");
@@ -558,8 +564,27 @@ public class BusinessController {
         }
     }
 
+    /**
+     * Subscribe to Nano Banana prediction progress (Server-Sent Events)
+     * Emits one event per status change; the stream closes after succeeded/failed/canceled
+     * No authentication required (same as status polling)
+     */
+    @GetMapping(value = "/nano-banana/events/{predictionId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribePredictionEvents(@PathVariable String predictionId) {
+        return predictionEventHub.subscribe(predictionId);
+    }
+
+    /**
+     * Replicate webhook callback
+     * Signed callbacks (webhook-id / webhook-timestamp / webhook-signature) update the prediction state directly;
+     * without a configured signing secret the payload is only a hint and the prediction is re-fetched from Replicate.
+     */
     @PostMapping("/callback")
-    public ResponseEntity<AjaxResult> receiveWebhook(@RequestBody(required = false) Map<String, Object> payload) {
+    public ResponseEntity<AjaxResult> receiveWebhook(
+            @RequestBody(required = false) String body,
+            @RequestHeader(value = "webhook-id", required = false) String webhookId,
+            @RequestHeader(value = "webhook-timestamp", required = false) String webhookTimestamp,
+            @RequestHeader(value = "webhook-signature", required = false) String webhookSignature) {
         try {
             // Check if callback is enabled
             if (!webhookEnabled) {
@@ -567,9 +592,19 @@ public class BusinessController {
                 return ResponseEntity.ok(AjaxResult.success("Callback disabled"));
             }
 
+            // 配置了签名密钥时，签名校验失败的回调一律拒绝
+            boolean verified = replicateService.hasWebhookSecret();
+            if (verified && !replicateService.verifyWebhookSignature(webhookId, webhookTimestamp, body, webhookSignature)) {
+                log.warn("Replicate callback signature verification failed: webhook-id={}", webhookId);
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(
+                        AjaxResult.error(ResponseCode.UNAUTHORIZED.getCode(), "Invalid webhook signature", null)
+                );
+            }
+
             // Log callback received
-            log.info("Replicate callback received: {}", JSON.toJSONString(payload));
+            log.info("Replicate callback received: {}", body);
 
+            Map<String, Object> payload = body != null && !body.isBlank() ? JSON.parseObject(body) : null;
             if (payload == null || payload.isEmpty()) {
                 log.warn("Received empty callback payload");
                 return ResponseEntity.badRequest().body(
@@ -617,9 +652,15 @@ public class BusinessController {
                 }
             }
 
-            // TODO: Update prediction status in database or cache
-            // TODO: Notify frontend via WebSocket or polling
-            // TODO: Process the output if prediction succeeded
+            // Update prediction state store and complete the waiting request on this node
+            if (id != null && status != null) {
+                if (verified) {
+                    replicateEngine.onWebhook(id, status, output, error);
+                } else {
+                    replicateEngine.refresh(id);
+                }
+            }
+            // SSE subscribers are notified by PredictionEventHub via the store's pub/sub channel
 
             return ResponseEntity.ok(AjaxResult.success(result));
 
@@ -670,6 +711,31 @@ public class BusinessController {
         }
     }
 
+    /**
+     * User ID of the authenticated caller
+     * The {@link CurrentUser} resolver already falls back to a username lookup for tokens minted without the
+     * uid claim; null means the account was deleted or disabled, in which case no usage is recorded.
+     */
+    private Long currentUserId(AuthenticatedUser user, String username) {
+        if (user == null) {
+            log.warn("Could not resolve user ID for usage log: {}", username);
+            return null;
+        }
+        return user.getUserId();
+    }
+
+    /**
+     * Request parameters recorded in the usage log for nano-banana
+     */
+    private String nanoBananaParams(String prompt, List<String> imageUrls, String aspectRatio, boolean async) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("prompt", prompt);
+        params.put("imageUrls", imageUrls);
+        params.put("aspectRatio", aspectRatio);
+        params.put("async", async);
+        return JSON.toJSONString(params);
+    }
+
     /**
      * Get Replicate API token configuration status (for debugging)
      * This endpoint helps diagnose token configuration issues
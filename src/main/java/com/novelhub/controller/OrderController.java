@@ -1,12 +1,10 @@
 package com.novelhub.controller;
 
+import com.novelhub.annotation.CurrentUser;
 import com.novelhub.vo.request.*;
 import com.novelhub.vo.response.*;
 import com.novelhub.entity.PaymentPlan;
 import com.novelhub.service.PaymentService;
-import com.novelhub.service.UserService;
-import com.novelhub.utils.JwtUtil;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -27,27 +25,15 @@ public class OrderController {
 
     @Autowired
     private PaymentService paymentService;
-    
-    @Autowired
-    private UserService userService;
-    
-    @Autowired
-    private JwtUtil jwtUtil;
 
     /**
      * 创建订单
      */
     @PostMapping
-    public ResponseEntity<AjaxResult> createOrder(@RequestBody CreateOrderRequestDTO request, HttpServletRequest httpRequest) {
+    public ResponseEntity<AjaxResult> createOrder(@RequestBody CreateOrderRequestDTO request, @CurrentUser AuthenticatedUser currentUser) {
         try {
-            String username = jwtUtil.validUsername(httpRequest);
-            log.info("username={}", username);
-            
-            var user = userService.getUserByUsername(username);
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
-            Long userId = user.getUserId();
+            log.info("username={}", currentUser.getUsername());
+            Long userId = currentUser.getUserId();
             CreateOrderResponseDTO response = paymentService.createOrder(request, userId);
             
             if (response.getSuccess()) {
@@ -69,16 +55,9 @@ public class OrderController {
      * 获取订单状态
      */
     @GetMapping("/{orderId}")
-    public ResponseEntity<AjaxResult> getOrderStatus(@PathVariable Long orderId, HttpServletRequest httpRequest) {
+    public ResponseEntity<AjaxResult> getOrderStatus(@PathVariable Long orderId, @CurrentUser AuthenticatedUser currentUser) {
         try {
-            String username = jwtUtil.validUsername(httpRequest);
-            
-            var user = userService.getUserByUsername(username);
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Long userId = user.getUserId();
+            Long userId = currentUser.getUserId();
             OrderDTO order = paymentService.getOrderDetail(orderId, userId);
             
             if (order == null) {
@@ -99,16 +78,9 @@ public class OrderController {
      * 根据订单号获取订单信息
      */
     @GetMapping("/by-order-no/{orderNo}")
-    public ResponseEntity<AjaxResult> getOrderByOrderNo(@PathVariable String orderNo, HttpServletRequest httpRequest) {
+    public ResponseEntity<AjaxResult> getOrderByOrderNo(@PathVariable String orderNo, @CurrentUser AuthenticatedUser currentUser) {
         try {
-            String username = jwtUtil.validUsername(httpRequest);
-            
-            var user = userService.getUserByUsername(username);
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Long userId = user.getUserId();
+            Long userId = currentUser.getUserId();
             OrderDTO order = paymentService.getOrderByOrderNumber(orderNo, userId);
             
             if (order == null) {
@@ -129,16 +101,9 @@ public class OrderController {
      * 获取用户订单历史
      */
     @GetMapping
-    public ResponseEntity<AjaxResult> getUserOrders(HttpServletRequest httpRequest) {
+    public ResponseEntity<AjaxResult> getUserOrders(@CurrentUser AuthenticatedUser currentUser) {
         try {
-            String username = jwtUtil.validUsername(httpRequest);
-            
-            var user = userService.getUserByUsername(username);
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
-            
-            Long userId = user.getUserId();
+            Long userId = currentUser.getUserId();
             List<OrderDTO> orders = paymentService.getUserOrders(userId);
             
             return ResponseEntity.ok(AjaxResult.success(orders));
@@ -166,13 +131,9 @@ public class OrderController {
      * 创建结账（创建订单+支付）
      */
     @PostMapping("/checkout")
-    public ResponseEntity<AjaxResult> createCheckout(@RequestBody Map<String, String> request, HttpServletRequest httpRequest) {
-        String username = jwtUtil.validUsername(httpRequest);
+    public ResponseEntity<AjaxResult> createCheckout(@RequestBody Map<String, String> request, @CurrentUser AuthenticatedUser currentUser) {
         try {
-            var user = userService.getUserByUsername(username);
-            if (user == null) return ResponseEntity.notFound().build();
-
-            Long userId = user.getUserId();
+            Long userId = currentUser.getUserId();
             String planIdStr = request.get("planId");
             String successUrl = request.get("successUrl");
             String cancelUrl = request.get("cancelUrl");
@@ -210,12 +171,8 @@ public class OrderController {
      * 支付成功回调
      */
     @GetMapping("/payment/success")
-    public ResponseEntity<AjaxResult> getPaymentSuccess(@RequestParam String session_id, HttpServletRequest httpRequest) {
+    public ResponseEntity<AjaxResult> getPaymentSuccess(@RequestParam String session_id, @CurrentUser AuthenticatedUser currentUser) {
         try {
-            String username = jwtUtil.validUsername(httpRequest);
-            var user = userService.getUserByUsername(username);
-            if (user == null) return ResponseEntity.notFound().build();
-
             // Get order details by session ID - need to implement this method or use alternative approach
             // For now, we'll return a simple success message
             // TODO: Implement getOrderBySessionId method in PaymentService
@@ -1,13 +1,13 @@
 package com.novelhub.controller;
 
 import com.alibaba.fastjson2.JSONObject;
+import com.novelhub.annotation.CurrentUser;
 import com.novelhub.entity.UserPoint;
 import com.novelhub.service.DailyClaimService;
+import com.novelhub.service.PointRollupService;
 import com.novelhub.service.PointService;
-import com.novelhub.service.UserService;
+import com.novelhub.vo.request.AuthenticatedUser;
 import com.novelhub.vo.response.AjaxResult;
-import com.novelhub.utils.JwtUtil;
-import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -24,21 +24,15 @@ public class PointController {
     private PointService pointService;
 
     @Autowired
-    private UserService userService;
-    
-    @Autowired
-    private JwtUtil jwtUtil;
+    private DailyClaimService dailyClaimService;
 
     @Autowired
-    private DailyClaimService dailyClaimService;
+    private PointRollupService pointRollupService;
 
     @GetMapping
-    public ResponseEntity<AjaxResult> getUserPoints(HttpServletRequest httpRequest) {
-        String username = jwtUtil.validUsername(httpRequest);
+    public ResponseEntity<AjaxResult> getUserPoints(@CurrentUser AuthenticatedUser currentUser) {
         try {
-            var user = userService.getUserByUsername(username);
-            if (user == null) return ResponseEntity.notFound().build();
-            Long userId = user.getUserId();
+            Long userId = currentUser.getUserId();
             
             // 获取用户积分
             UserPoint userPoint = pointService.getUserPoints(userId);
@@ -72,22 +66,13 @@ public class PointController {
     public ResponseEntity<AjaxResult> getPointsHistoryDetailed(
             @RequestParam(defaultValue = "1") Integer page,
             @RequestParam(defaultValue = "10") Integer size,
-            HttpServletRequest httpRequest) {
+            @CurrentUser AuthenticatedUser currentUser) {
         log.info("Get points history request - page: {}, size: {}", page, size);
         
         try {
             // 获取当前用户ID
-            String username = jwtUtil.validUsername(httpRequest);
-            log.info("Current username: {}", username);
-            var user = userService.getUserByUsername(username);
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
-            Long userId = user.getUserId();
-            if (userId == null) {
-                return ResponseEntity.badRequest()
-                        .body(AjaxResult.error("User not found"));
-            }
+            log.info("Current username: {}", currentUser.getUsername());
+            Long userId = currentUser.getUserId();
             
             // 验证分页参数
             if (page < 1) page = 1;
@@ -123,26 +108,90 @@ public class PointController {
         }
     }
 
+    /**
+     * Get User Points History (keyset pagination)
+     * Pass the returned nextCursor to fetch the next page; every page costs the same regardless of depth.
+     *
+     * @param cursor cursor from the previous page (omit for the first page)
+     * @param size page size (default: 10)
+     * @param type optional type filter (0 = consume, 1 = add)
+     * @param pointsType optional points type filter
+     * @param includeTotal whether to count all matching records (default: false)
+     * @return response with points history and the next cursor
+     */
+    @GetMapping("/history/cursor")
+    public ResponseEntity<AjaxResult> getPointsHistoryByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") Integer size,
+            @RequestParam(required = false) Integer type,
+            @RequestParam(required = false) Integer pointsType,
+            @RequestParam(defaultValue = "false") Boolean includeTotal,
+            @CurrentUser AuthenticatedUser currentUser) {
+        try {
+            Long userId = currentUser.getUserId();
+            if (size < 1 || size > 100) size = 10;
+
+            var pointDetails = pointService.getUserPointDetailsByCursor(userId, cursor, size, type, pointsType, includeTotal);
+
+            var userPoint = pointService.getUserPoints(userId);
+            if (userPoint == null) {
+                userPoint = pointService.initUserPoints(userId);
+            }
+
+            var responseData = new JSONObject();
+            responseData.put("data", pointDetails.getRecords());
+            responseData.put("pageSize", size);
+            responseData.put("nextCursor", pointDetails.getNextCursor());
+            responseData.put("hasNext", pointDetails.getHasNext());
+            if (pointDetails.getTotal() != null) {
+                responseData.put("totalRecords", pointDetails.getTotal());
+            }
+            responseData.put("goldCoins", userPoint.getFixedPoints() != null ? userPoint.getFixedPoints() : 0);
+            responseData.put("silverCoins", userPoint.getFreePoints() != null ? userPoint.getFreePoints() : 0);
+            responseData.put("totalPoints", userPoint.getPoints() != null ? userPoint.getPoints() : 0);
+
+            return ResponseEntity.ok(AjaxResult.success("Points history retrieved successfully", responseData));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(AjaxResult.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Get points history error", e);
+            return ResponseEntity.internalServerError()
+                    .body(AjaxResult.error("Failed to get points history: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get User Points Summary (from daily rollups, no ledger scan)
+     *
+     * @param days number of days including today (default: 30, max: 366)
+     * @return totals, consumed per function, earned/consumed per points type and the daily breakdown
+     */
+    @GetMapping("/summary")
+    public ResponseEntity<AjaxResult> getPointsSummary(
+            @RequestParam(defaultValue = "30") Integer days,
+            @CurrentUser AuthenticatedUser currentUser) {
+        try {
+            if (days < 1 || days > 366) days = 30;
+            Map<String, Object> summary = pointRollupService.getSummary(currentUser.getUserId(), days);
+            return ResponseEntity.ok(AjaxResult.success(summary));
+        } catch (Exception e) {
+            log.error("Get points summary error", e);
+            return ResponseEntity.internalServerError()
+                    .body(AjaxResult.error("Failed to get points summary: " + e.getMessage()));
+        }
+    }
+
     /**
      * 每日领取银币
      * @return 领取结果
      */
     @PostMapping("/claim-free-points")
-    public ResponseEntity<AjaxResult> claimFreePoints(HttpServletRequest httpRequest) {
+    public ResponseEntity<AjaxResult> claimFreePoints(@CurrentUser AuthenticatedUser currentUser) {
         log.info("Claim free points request");
         
         try {
             // 获取当前用户ID
-            String username = jwtUtil.validUsername(httpRequest);
-            var user = userService.getUserByUsername(username);
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
-            Long userId = user.getUserId();
-            if (userId == null) {
-                return ResponseEntity.badRequest()
-                        .body(AjaxResult.error("User not found"));
-            }
+            Long userId = currentUser.getUserId();
             
             // 调用每日签到服务
             Map<String, Object> claimResult = dailyClaimService.claimFreePoints(userId);
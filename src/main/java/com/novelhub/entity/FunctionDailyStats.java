@@ -0,0 +1,35 @@
+package com.novelhub.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 功能日统计实体类（按 日期/功能 增量累计，由 FunctionStatsAggregator 维护）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("tb_function_daily_stats")
+public class FunctionDailyStats {
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+    private LocalDate statDate;
+    private Integer functionType;
+    private Integer totalCalls;
+    private Integer authenticatedCalls;
+    private Integer guestCalls;
+    private Long freePointsConsumed;
+    private Long fixedPointsConsumed;
+    private Integer uniqueUsers;
+    private Integer uniqueGuests;
+    private Integer successCalls;
+    private Integer failedCalls;
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
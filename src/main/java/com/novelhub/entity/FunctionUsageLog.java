@@ -0,0 +1,28 @@
+package com.novelhub.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 功能使用日志实体类（登录用户记录 userId，游客记录 fingerprint）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("tb_function_usage_log")
+public class FunctionUsageLog {
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+    private Long userId;
+    private String fingerprint;
+    private Integer functionType;
+    private Integer pointsType;
+    private Integer pointsCost;
+    private String requestParams;
+    private String responseStatus;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,31 @@
+package com.novelhub.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 积分日汇总实体类（按 用户/日期/类型/功能/积分类型 增量累计）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("tb_point_daily_rollup")
+public class PointDailyRollup {
+    @TableId(value = "rollup_id", type = IdType.AUTO)
+    private Long rollupId;
+    private Long userId;
+    private LocalDate statDate;
+    private Integer type;
+    private Integer funcType;
+    private Integer pointsType;
+    private Long totalPoints;
+    private Integer txCount;
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
@@ -24,6 +24,8 @@ public class PointDetail {
     private String taskId;
     private Integer isApi;
     private String extraData;
+    // Redis 账本条目ID，账本重放时按唯一键去重（MySQL 直接写入的明细为 null）
+    private String ledgerId;
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
     @TableField(fill = FieldFill.INSERT_UPDATE)
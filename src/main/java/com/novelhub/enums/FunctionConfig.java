@@ -1,5 +1,8 @@
 package com.novelhub.enums;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Function Configuration Enum
  * Defines function limits and pricing (not stored in database, code-based configuration)
@@ -44,6 +47,18 @@ public enum FunctionConfig {
     private final int freePointsCost;           // Cost in free points (silver coins) for authenticated users
     private final int fixedPointsCost;          // Cost in fixed points (gold coins) for authenticated users
 
+    // 查找索引（枚举常量初始化完成后构建）
+    private static final Map<Integer, FunctionConfig> BY_TYPE = new HashMap<>();
+    private static final Map<String, FunctionConfig> BY_NAME = new HashMap<>();
+
+    static {
+        for (FunctionConfig config : values()) {
+            if (BY_TYPE.put(config.functionType, config) != null || BY_NAME.put(config.functionName, config) != null) {
+                throw new IllegalStateException("Duplicate function config: " + config);
+            }
+        }
+    }
+
     FunctionConfig(int functionType, String functionName, SceneType sceneType, ModelType modelType, 
                    int guestDailyLimit, int freePointsCost, int fixedPointsCost) {
         this.functionType = functionType;
@@ -166,12 +181,7 @@ public enum FunctionConfig {
      * @return FunctionConfig or null if not found
      */
     public static FunctionConfig findByType(int functionType) {
-        for (FunctionConfig config : values()) {
-            if (config.functionType == functionType) {
-                return config;
-            }
-        }
-        return null;
+        return BY_TYPE.get(functionType);
     }
 
     /**
@@ -183,12 +193,7 @@ public enum FunctionConfig {
         if (functionName == null) {
             return null;
         }
-        for (FunctionConfig config : values()) {
-            if (config.functionName.equals(functionName)) {
-                return config;
-            }
-        }
-        return null;
+        return BY_NAME.get(functionName);
     }
 }
 
@@ -0,0 +1,41 @@
+package com.novelhub.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.novelhub.entity.FunctionDailyStats;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface FunctionDailyStatsMapper extends BaseMapper<FunctionDailyStats> {
+
+    /**
+     * 批量累加功能日统计（单条多行 INSERT ... ON DUPLICATE KEY UPDATE）
+     * 计数列为本次增量，累加到已有值；unique 列为当日去重总数（null 表示未变化），取较大值
+     *
+     * @param stats 增量
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_function_daily_stats (stat_date, function_type, total_calls, authenticated_calls, guest_calls, " +
+            "free_points_consumed, fixed_points_consumed, unique_users, unique_guests, success_calls, failed_calls) VALUES " +
+            "<foreach collection='stats' item='s' separator=','>" +
+            "(#{s.statDate}, #{s.functionType}, #{s.totalCalls}, #{s.authenticatedCalls}, #{s.guestCalls}, " +
+            "#{s.freePointsConsumed}, #{s.fixedPointsConsumed}, COALESCE(#{s.uniqueUsers}, 0), COALESCE(#{s.uniqueGuests}, 0), " +
+            "#{s.successCalls}, #{s.failedCalls})" +
+            "</foreach>" +
+            " AS new ON DUPLICATE KEY UPDATE " +
+            "total_calls = tb_function_daily_stats.total_calls + new.total_calls, " +
+            "authenticated_calls = tb_function_daily_stats.authenticated_calls + new.authenticated_calls, " +
+            "guest_calls = tb_function_daily_stats.guest_calls + new.guest_calls, " +
+            "free_points_consumed = tb_function_daily_stats.free_points_consumed + new.free_points_consumed, " +
+            "fixed_points_consumed = tb_function_daily_stats.fixed_points_consumed + new.fixed_points_consumed, " +
+            "unique_users = GREATEST(tb_function_daily_stats.unique_users, new.unique_users), " +
+            "unique_guests = GREATEST(tb_function_daily_stats.unique_guests, new.unique_guests), " +
+            "success_calls = tb_function_daily_stats.success_calls + new.success_calls, " +
+            "failed_calls = tb_function_daily_stats.failed_calls + new.failed_calls" +
+            "</script>")
+    int upsertBatch(@Param("stats") List<FunctionDailyStats> stats);
+}
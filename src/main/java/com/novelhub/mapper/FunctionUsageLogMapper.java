@@ -0,0 +1,28 @@
+package com.novelhub.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.novelhub.entity.FunctionUsageLog;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface FunctionUsageLogMapper extends BaseMapper<FunctionUsageLog> {
+
+    /**
+     * 批量插入功能使用日志（单条多行 INSERT）
+     *
+     * @param logs 使用日志
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_function_usage_log (user_id, fingerprint, function_type, points_type, points_cost, request_params, response_status, error_message, created_at) VALUES " +
+            "<foreach collection='logs' item='l' separator=','>" +
+            "(#{l.userId}, #{l.fingerprint}, #{l.functionType}, COALESCE(#{l.pointsType}, 0), COALESCE(#{l.pointsCost}, 0), " +
+            "#{l.requestParams}, COALESCE(#{l.responseStatus}, 'success'), #{l.errorMessage}, COALESCE(#{l.createdAt}, NOW()))" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("logs") List<FunctionUsageLog> logs);
+}
@@ -0,0 +1,29 @@
+package com.novelhub.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.novelhub.entity.PointDailyRollup;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface PointDailyRollupMapper extends BaseMapper<PointDailyRollup> {
+
+    /**
+     * 批量累加日汇总（单条多行 INSERT ... ON DUPLICATE KEY UPDATE）
+     *
+     * @param rollups 增量（totalPoints / txCount 为本批次的累计值）
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_point_daily_rollup (user_id, stat_date, type, func_type, points_type, total_points, tx_count) VALUES " +
+            "<foreach collection='rollups' item='r' separator=','>" +
+            "(#{r.userId}, #{r.statDate}, #{r.type}, #{r.funcType}, #{r.pointsType}, #{r.totalPoints}, #{r.txCount})" +
+            "</foreach>" +
+            " AS new ON DUPLICATE KEY UPDATE total_points = tb_point_daily_rollup.total_points + new.total_points, " +
+            "tx_count = tb_point_daily_rollup.tx_count + new.tx_count" +
+            "</script>")
+    int upsertBatch(@Param("rollups") List<PointDailyRollup> rollups);
+}
@@ -2,8 +2,56 @@ package com.novelhub.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.novelhub.entity.PointDetail;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface PointDetailMapper extends BaseMapper<PointDetail> {
+
+    /**
+     * 批量插入积分明细（单条多行 INSERT，空值使用与表定义相同的默认值）
+     *
+     * @param details 积分明细
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_point_detail (user_id, points, type, func_type, points_type, task_id, is_api, extra_data, created_at, updated_at) VALUES " +
+            "<foreach collection='details' item='d' separator=','>" +
+            "(#{d.userId}, #{d.points}, COALESCE(#{d.type}, 0), COALESCE(#{d.funcType}, 0), COALESCE(#{d.pointsType}, 1), " +
+            "#{d.taskId}, COALESCE(#{d.isApi}, 0), COALESCE(#{d.extraData}, ''), COALESCE(#{d.createdAt}, NOW()), NOW())" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("details") List<PointDetail> details);
+
+    /**
+     * 批量插入 Redis 账本的积分明细，ledger_id 已存在的行被忽略（账本重放）
+     *
+     * @param details 积分明细
+     * @return 实际插入的行数
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO tb_point_detail (user_id, points, type, func_type, points_type, task_id, is_api, extra_data, ledger_id, created_at, updated_at) VALUES " +
+            "<foreach collection='details' item='d' separator=','>" +
+            "(#{d.userId}, #{d.points}, COALESCE(#{d.type}, 0), COALESCE(#{d.funcType}, 0), COALESCE(#{d.pointsType}, 1), " +
+            "#{d.taskId}, COALESCE(#{d.isApi}, 0), COALESCE(#{d.extraData}, ''), #{d.ledgerId}, COALESCE(#{d.createdAt}, NOW()), NOW())" +
+            "</foreach>" +
+            "</script>")
+    int insertLedgerBatch(@Param("details") List<PointDetail> details);
+
+    /**
+     * 查询已写入的账本条目ID
+     *
+     * @param ledgerIds 账本条目ID
+     * @return 其中已存在于 tb_point_detail 的ID
+     */
+    @Select("<script>" +
+            "SELECT ledger_id FROM tb_point_detail WHERE ledger_id IN " +
+            "<foreach collection='ledgerIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<String> selectLedgerIds(@Param("ledgerIds") Collection<String> ledgerIds);
 }
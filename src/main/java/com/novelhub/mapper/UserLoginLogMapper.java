@@ -2,10 +2,26 @@ package com.novelhub.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.novelhub.entity.UserLoginLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface UserLoginLogMapper extends BaseMapper<UserLoginLog> {
-}
-
 
+    /**
+     * 批量插入登录日志（单条多行 INSERT）
+     *
+     * @param logs 登录日志
+     * @return 影响行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_user_login_log (user_id, login_time, login_ip, device, browser, os, fingerprint, login_status, remark) VALUES " +
+            "<foreach collection='logs' item='l' separator=','>" +
+            "(#{l.userId}, #{l.loginTime}, #{l.loginIp}, #{l.device}, #{l.browser}, #{l.os}, #{l.fingerprint}, #{l.loginStatus}, #{l.remark})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("logs") List<UserLoginLog> logs);
+}
@@ -2,10 +2,13 @@ package com.novelhub.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.novelhub.entity.User;
+import com.novelhub.entity.UserLoginLog;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Update;
 
+import java.util.List;
+
 /**
  * 用户Mapper接口
  */
@@ -19,7 +22,26 @@ public interface UserMapper extends BaseMapper<User> {
      * @param loginIp 登录IP
      * @return 影响行数
      */
-    @Update("UPDATE tb_user SET last_login_time = NOW(), last_login_ip = #{loginIp} WHERE id = #{userId}")
+    @Update("UPDATE tb_user SET last_login_time = NOW(), last_login_ip = #{loginIp} WHERE user_id = #{userId}")
     int updateLastLogin(@Param("userId") Long userId, @Param("loginIp") String loginIp);
+
+    /**
+     * 批量更新最后登录信息（单条 UPDATE，每个用户一条记录）
+     *
+     * @param logins 每个用户最近一次登录
+     * @return 影响行数
+     */
+    @Update("<script>" +
+            "UPDATE tb_user SET " +
+            "last_login_time = CASE user_id " +
+            "<foreach collection='logins' item='l'>WHEN #{l.userId} THEN #{l.loginTime} </foreach>" +
+            "END, " +
+            "last_login_ip = CASE user_id " +
+            "<foreach collection='logins' item='l'>WHEN #{l.userId} THEN #{l.loginIp} </foreach>" +
+            "END " +
+            "WHERE user_id IN " +
+            "<foreach collection='logins' item='l' open='(' separator=',' close=')'>#{l.userId}</foreach>" +
+            "</script>")
+    int updateLastLoginBatch(@Param("logins") List<UserLoginLog> logins);
 }
 
@@ -3,7 +3,88 @@ package com.novelhub.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.novelhub.entity.UserPoint;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
 
 @Mapper
 public interface UserPointMapper extends BaseMapper<UserPoint> {
+
+    /**
+     * 将 Redis 余额快照写回 tb_user_points（只更新余额列，不影响 claimed_days / claimed_at）
+     *
+     * @param up 余额快照（按 user_id 定位）
+     * @return 影响行数
+     */
+    @Update("UPDATE tb_user_points SET points = #{up.points}, fixed_points = #{up.fixedPoints}, " +
+            "sub_points = #{up.subPoints}, sub_points_left = #{up.subPointsLeft}, free_points = #{up.freePoints}, " +
+            "updated_at = NOW() WHERE user_id = #{up.userId}")
+    int updateBalances(@Param("up") UserPoint up);
+
+    /**
+     * 单条语句扣减：按 免费 > 订阅 > 固定 的顺序在 SQL 中拆分，总余额不足时不命中（不加锁、不重试）
+     * MySQL 按从左到右的顺序赋值且后面的表达式读到已更新的列，因此第一个赋值基于原值求出
+     * 扣减后总余额 * 4 + 积分类型（0-免费 2-订阅 1-固定），经 LAST_INSERT_ID(expr) 保存在当前连接上；
+     * 之后先改 points（依赖原 free/sub），再改 sub_points_left（依赖原 free），最后改 free_points
+     *
+     * @param userId 用户ID
+     * @param amount 扣减的积分
+     * @return 影响行数（0 = 余额不足）；命中时用 {@link #selectDebitResult()} 读取结果
+     */
+    @Update("UPDATE tb_user_points SET " +
+            "updated_at = NOW() + INTERVAL 0 * LAST_INSERT_ID((free_points + sub_points_left + points - #{amount}) * 4 + " +
+            "CASE WHEN free_points >= #{amount} THEN 0 WHEN free_points + sub_points_left >= #{amount} THEN 2 ELSE 1 END) SECOND, " +
+            "points = points - GREATEST(0, #{amount} - free_points - sub_points_left), " +
+            "sub_points_left = sub_points_left - LEAST(sub_points_left, GREATEST(0, #{amount} - free_points)), " +
+            "free_points = free_points - LEAST(free_points, #{amount}) " +
+            "WHERE user_id = #{userId} AND free_points + sub_points_left + points >= #{amount}")
+    int debit(@Param("userId") Long userId, @Param("amount") int amount);
+
+    /**
+     * 读取本连接上一次 {@link #debit} 保存的结果（会话值，不访问表；须与 debit 在同一事务内且 debit 命中后调用）
+     *
+     * @return 扣减后总余额 * 4 + 积分类型
+     */
+    @Select("SELECT LAST_INSERT_ID()")
+    long selectDebitResult();
+
+    /**
+     * 原子增加各余额列（col = col + delta，无需先查询）
+     *
+     * @param userId 用户ID
+     * @param delta 各列增量（不可为 null）
+     * @return 影响行数
+     */
+    @Update("UPDATE tb_user_points SET points = points + #{d.points}, fixed_points = fixed_points + #{d.fixedPoints}, " +
+            "sub_points = sub_points + #{d.subPoints}, sub_points_left = sub_points_left + #{d.subPointsLeft}, " +
+            "free_points = free_points + #{d.freePoints}, updated_at = NOW() WHERE user_id = #{userId}")
+    int addBalances(@Param("userId") Long userId, @Param("d") UserPoint delta);
+
+    /**
+     * 条件领取每日积分：只有今天尚未领取时才写入领取时间（并发领取只有一个能命中）
+     *
+     * @param userId 用户ID
+     * @param today 今日零点
+     * @param claimedAt 本次领取时间（秒精度，供回滚时定位）
+     * @return 影响行数（0 = 今日已领取）
+     */
+    @Update("UPDATE tb_user_points SET claimed_at = #{claimedAt}, claimed_days = claimed_days + 1, updated_at = NOW() " +
+            "WHERE user_id = #{userId} AND (claimed_at IS NULL OR claimed_at < #{today})")
+    int claimDaily(@Param("userId") Long userId, @Param("today") LocalDateTime today,
+                   @Param("claimedAt") LocalDateTime claimedAt);
+
+    /**
+     * 撤销本次领取（积分入账失败时调用，领取时间已被其他请求改写则不生效）
+     *
+     * @param userId 用户ID
+     * @param claimedAt 本次领取时间
+     * @param previous 领取前的领取时间
+     * @return 影响行数
+     */
+    @Update("UPDATE tb_user_points SET claimed_at = #{previous}, claimed_days = claimed_days - 1, updated_at = NOW() " +
+            "WHERE user_id = #{userId} AND claimed_at = #{claimedAt}")
+    int revertDailyClaim(@Param("userId") Long userId, @Param("claimedAt") LocalDateTime claimedAt,
+                         @Param("previous") LocalDateTime previous);
 }
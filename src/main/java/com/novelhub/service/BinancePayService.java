@@ -6,9 +6,11 @@ import com.novelhub.entity.PaymentPlan;
 import com.novelhub.mapper.OrderMapper;
 import com.novelhub.mapper.PaymentMapper;
 import com.novelhub.mapper.PaymentPlanMapper;
+import com.novelhub.utils.IntegrationGuard;
 import com.novelhub.vo.response.CreateBinancePayOrderResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
@@ -36,7 +38,9 @@ public class BinancePayService {
     private final PaymentPlanMapper paymentPlanMapper;
     private final OrderMapper orderMapper;
     private final PaymentMapper paymentMapper;
+    @Qualifier("binancePayRestTemplate")
     private final RestTemplate restTemplate;
+    private final IntegrationGuard integrationGuard;
 
     @Value("${binance.pay.api-key:}")
     private String apiKey;
@@ -214,14 +218,14 @@ public class BinancePayService {
             headers.set("BinancePay-Certificate-SN", apiKey);
             headers.set("BinancePay-Signature", signature);
 
-            // 发送请求
+            // 发送请求（熔断/舱壁拒绝时直接失败，支付请求不做降级）
             HttpEntity<String> entity = new HttpEntity<>(payload, headers);
             @SuppressWarnings("unchecked")
-            ResponseEntity<Map> response = restTemplate.postForEntity(
+            ResponseEntity<Map> response = integrationGuard.execute("binance-pay", () -> restTemplate.postForEntity(
                 apiUrl + endpoint,
                 entity,
                 Map.class
-            );
+            ));
 
             @SuppressWarnings("unchecked")
             Map<String, Object> responseBody = (Map<String, Object>) response.getBody();
@@ -72,27 +72,34 @@ public class BusinessService {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            // Check if can use
-            Map<String, Object> checkResult = checkGuestUsage(fingerprint, functionName);
-            if (!(Boolean) checkResult.get("canUse")) {
+            FunctionConfig config = FunctionConfig.findByName(functionName);
+            if (config == null) {
                 result.put("success", false);
-                result.put("message", checkResult.get("message"));
-                result.put("usageCount", checkResult.get("usageCount"));
-                result.put("dailyLimit", checkResult.get("dailyLimit"));
+                result.put("message", "Function not found: " + functionName);
                 return result;
             }
+            int dailyLimit = config.getGuestDailyLimit();
 
-            // Increment usage count and set expiry to midnight
+            // Check limit, increment and expire at midnight atomically (single Lua round-trip)
             String usageKey = buildUsageKey(fingerprint, functionName);
-            Long newCount = redisUtil.incrementUntilMidnight(usageKey);
-            
-            FunctionConfig config = FunctionConfig.findByName(functionName);
-            int dailyLimit = config.getGuestDailyLimit();
+            long[] quota = redisUtil.incrementWithLimitUntilMidnight(usageKey, dailyLimit);
+            boolean allowed = quota[0] == 1;
+            int newCount = (int) quota[1];
+
+            if (!allowed) {
+                result.put("success", false);
+                result.put("message", String.format("Daily limit reached. You have used %d/%d tries today. Please login for unlimited access.", 
+                    newCount, dailyLimit));
+                result.put("usageCount", newCount);
+                result.put("dailyLimit", dailyLimit);
+                result.put("remaining", 0);
+                return result;
+            }
             
             result.put("success", true);
-            result.put("usageCount", newCount.intValue());
+            result.put("usageCount", newCount);
             result.put("dailyLimit", dailyLimit);
-            result.put("remaining", dailyLimit - newCount.intValue());
+            result.put("remaining", dailyLimit - newCount);
             result.put("message", String.format("Function executed successfully. %d/%d uses today.", 
                 newCount, dailyLimit));
             
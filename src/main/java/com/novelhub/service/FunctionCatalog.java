@@ -0,0 +1,106 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.novelhub.enums.FunctionConfig;
+import com.novelhub.enums.PointsType;
+import com.novelhub.vo.response.AjaxResult;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Function Catalog
+ * The /functions response only depends on {@link FunctionConfig}, so it is built and serialized once at startup;
+ * requests get the same pre-encoded JSON bytes and a strong ETag for conditional GETs (304 Not Modified).
+ */
+@Slf4j
+@Service
+public class FunctionCatalog {
+
+    private byte[] body;
+
+    private String eTag;
+
+    @PostConstruct
+    public void init() {
+        body = JSON.toJSONBytes(AjaxResult.success(buildFunctions()));
+        eTag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+        log.info("Function catalog built: {} functions, {} bytes, ETag {}", FunctionConfig.values().length, body.length, eTag);
+    }
+
+    /**
+     * Serialized AjaxResult with all functions (shared, do not modify)
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    /**
+     * Strong ETag of the body (quoted)
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    private Map<String, Object> buildFunctions() {
+        Map<String, Object> functions = new HashMap<>();
+
+        for (FunctionConfig config : FunctionConfig.values()) {
+            Map<String, Object> funcInfo = new HashMap<>();
+            funcInfo.put("functionType", config.getFunctionType());
+            funcInfo.put("functionName", config.getFunctionName());
+
+            // Scene information
+            Map<String, Object> sceneInfo = new HashMap<>();
+            sceneInfo.put("code", config.getScene());
+            sceneInfo.put("name", config.getSceneType().getName());
+            sceneInfo.put("description", config.getSceneType().getDescription());
+            funcInfo.put("scene", sceneInfo);
+
+            // Model information
+            Map<String, Object> modelInfo = new HashMap<>();
+            modelInfo.put("code", config.getModel());
+            modelInfo.put("name", config.getModelType().getName());
+            modelInfo.put("provider", config.getModelType().getProvider());
+            modelInfo.put("description", config.getModelType().getDescription());
+            funcInfo.put("model", modelInfo);
+
+            funcInfo.put("guestDailyLimit", config.getGuestDailyLimit());
+            funcInfo.put("freePointsCost", config.getFreePointsCost());
+            funcInfo.put("fixedPointsCost", config.getFixedPointsCost());
+            funcInfo.put("costDisplay", config.getCostDisplay());
+
+            // Pricing details with points type codes
+            Map<String, Object> pricing = new HashMap<>();
+            if (config.getFreePointsCost() > 0) {
+                Map<String, Object> freePricing = new HashMap<>();
+                freePricing.put("cost", config.getFreePointsCost());
+                freePricing.put("type", PointsType.FREE.getCode());  // 1
+                freePricing.put("typeName", PointsType.FREE.getName());
+                pricing.put("silverCoins", freePricing);
+            }
+            if (config.getFixedPointsCost() > 0) {
+                Map<String, Object> fixedPricing = new HashMap<>();
+                fixedPricing.put("cost", config.getFixedPointsCost());
+                fixedPricing.put("type", PointsType.FIXED.getCode());  // 2
+                fixedPricing.put("typeName", PointsType.FIXED.getName());
+                pricing.put("goldCoins", fixedPricing);
+            }
+            if (config.getGuestDailyLimit() > 0) {
+                Map<String, Object> trialPricing = new HashMap<>();
+                trialPricing.put("dailyLimit", config.getGuestDailyLimit());
+                trialPricing.put("type", PointsType.TRIAL.getCode());  // 0
+                trialPricing.put("typeName", PointsType.TRIAL.getName());
+                pricing.put("trial", trialPricing);
+            }
+            funcInfo.put("pricing", pricing);
+
+            functions.put(config.getFunctionName(), funcInfo);
+        }
+        return functions;
+    }
+}
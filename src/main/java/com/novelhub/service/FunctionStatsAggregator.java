@@ -0,0 +1,285 @@
+package com.novelhub.service;
+
+import com.novelhub.entity.FunctionDailyStats;
+import com.novelhub.entity.FunctionUsageLog;
+import com.novelhub.enums.PointsType;
+import com.novelhub.mapper.FunctionDailyStatsMapper;
+import com.novelhub.utils.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Function Stats Aggregator
+ * Keeps tb_function_daily_stats current without scanning tb_function_usage_log: every usage event bumps
+ * striped LongAdder counters of its (date, function type) bucket on the calling thread, and a background
+ * flusher upserts the deltas with INSERT ... ON DUPLICATE KEY UPDATE (additive, so several nodes can flush).
+ * Unique users / guests are counted with Redis HyperLogLog (PFADD/PFCOUNT) shared by all nodes.
+ * 写库失败时增量放回计数器，下次刷新重试
+ */
+@Slf4j
+@Service
+public class FunctionStatsAggregator {
+
+    private static final String UNIQUE_KEY_PREFIX = "function:stats:uv:";
+
+    /**
+     * Members per PFADD call (keeps unpack() well below the Lua stack limit)
+     */
+    private static final int PFADD_CHUNK = 1000;
+
+    /**
+     * Add members to a HyperLogLog and return its cardinality
+     * KEYS[1] = HLL key; ARGV[1] = TTL seconds, ARGV[2..] = members
+     */
+    private static final String PFADD_SCRIPT =
+        "if #ARGV > 1 then redis.call('PFADD', KEYS[1], unpack(ARGV, 2)) end " +
+        "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[1])) " +
+        "return redis.call('PFCOUNT', KEYS[1])";
+
+    private static final DefaultRedisScript<Long> PFADD = new DefaultRedisScript<>(PFADD_SCRIPT, Long.class);
+
+    @Value("${function-usage.stats.flush-interval-millis:10000}")
+    private long flushIntervalMillis;
+
+    @Value("${function-usage.stats.unique-ttl-days:2}")
+    private long uniqueTtlDays;
+
+    @Autowired
+    private FunctionDailyStatsMapper functionDailyStatsMapper;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    private final Map<BucketKey, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("function-stats-");
+        threadFactory.setDaemon(true);
+        flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+
+    /**
+     * Count a usage event (non-blocking, no I/O)
+     * @param event Usage log row (createdAt decides the stat date)
+     */
+    public void accept(FunctionUsageLog event) {
+        if (event.getFunctionType() == null) {
+            return;
+        }
+        LocalDate statDate = event.getCreatedAt() != null ? event.getCreatedAt().toLocalDate() : LocalDate.now();
+        Bucket bucket = buckets.computeIfAbsent(new BucketKey(statDate, event.getFunctionType()), k -> new Bucket());
+
+        bucket.totalCalls.increment();
+        if (event.getUserId() != null) {
+            bucket.authenticatedCalls.increment();
+            bucket.users.add(String.valueOf(event.getUserId()));
+        } else {
+            bucket.guestCalls.increment();
+            if (event.getFingerprint() != null) {
+                bucket.guests.add(event.getFingerprint());
+            }
+        }
+
+        int cost = event.getPointsCost() != null ? event.getPointsCost() : 0;
+        if (cost > 0 && event.getPointsType() != null) {
+            if (event.getPointsType() == PointsType.FREE.getCode()) {
+                bucket.freePoints.add(cost);
+            } else if (event.getPointsType() == PointsType.FIXED.getCode()) {
+                bucket.fixedPoints.add(cost);
+            }
+        }
+
+        if (FunctionUsageRecorder.STATUS_FAILED.equals(event.getResponseStatus())) {
+            bucket.failedCalls.increment();
+        } else {
+            bucket.successCalls.increment();
+        }
+    }
+
+    private synchronized void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Function stats flush failed", e);
+        }
+    }
+
+    /**
+     * Upsert the deltas collected since the last flush
+     */
+    private void flush() {
+        LocalDate expireBefore = LocalDate.now().minusDays(1);
+        List<FunctionDailyStats> rows = new ArrayList<>();
+        for (Map.Entry<BucketKey, Bucket> entry : buckets.entrySet()) {
+            BucketKey key = entry.getKey();
+            FunctionDailyStats row = entry.getValue().drain(key);
+            if (row == null) {
+                // 旧日期的桶不会再有新事件
+                if (key.statDate().isBefore(expireBefore)) {
+                    buckets.remove(key, entry.getValue());
+                }
+                continue;
+            }
+            row.setUniqueUsers(countUnique("user:", key, entry.getValue().drainUsers()));
+            row.setUniqueGuests(countUnique("guest:", key, entry.getValue().drainGuests()));
+            rows.add(row);
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        // 固定加锁顺序，避免多节点并发刷新互相死锁
+        rows.sort(Comparator.comparing(FunctionDailyStats::getStatDate).thenComparing(FunctionDailyStats::getFunctionType));
+        try {
+            functionDailyStatsMapper.upsertBatch(rows);
+        } catch (Exception e) {
+            log.error("Failed to write {} function stats rows, will retry: {}", rows.size(), e.getMessage());
+            for (FunctionDailyStats row : rows) {
+                buckets.computeIfAbsent(new BucketKey(row.getStatDate(), row.getFunctionType()), k -> new Bucket()).restore(row);
+            }
+        }
+    }
+
+    /**
+     * Add new members to the day's HyperLogLog
+     * @return Unique count for the day, or null when there is nothing new (or Redis is unavailable)
+     */
+    private Integer countUnique(String kind, BucketKey key, List<String> members) {
+        if (members.isEmpty()) {
+            return null;
+        }
+        String redisKey = UNIQUE_KEY_PREFIX + kind + key.statDate() + ":" + key.functionType();
+        long ttlSeconds = TimeUnit.DAYS.toSeconds(uniqueTtlDays);
+        try {
+            Long count = null;
+            for (int from = 0; from < members.size(); from += PFADD_CHUNK) {
+                List<String> chunk = members.subList(from, Math.min(from + PFADD_CHUNK, members.size()));
+                Object[] args = new Object[chunk.size() + 1];
+                args[0] = ttlSeconds;
+                for (int i = 0; i < chunk.size(); i++) {
+                    args[i + 1] = chunk.get(i);
+                }
+                count = redisUtil.execute(PFADD, Collections.singletonList(redisKey), args);
+            }
+            return count != null ? count.intValue() : null;
+        } catch (Exception e) {
+            log.warn("Failed to update unique counter {}: {}", redisKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private record BucketKey(LocalDate statDate, int functionType) {
+    }
+
+    /**
+     * Counters of one (date, function type) since the last flush
+     */
+    private static class Bucket {
+
+        private final LongAdder totalCalls = new LongAdder();
+
+        private final LongAdder authenticatedCalls = new LongAdder();
+
+        private final LongAdder guestCalls = new LongAdder();
+
+        private final LongAdder freePoints = new LongAdder();
+
+        private final LongAdder fixedPoints = new LongAdder();
+
+        private final LongAdder successCalls = new LongAdder();
+
+        private final LongAdder failedCalls = new LongAdder();
+
+        // 本周期内出现的用户 / 指纹（本地去重，刷新时批量 PFADD）
+        private final Set<String> users = ConcurrentHashMap.newKeySet();
+
+        private final Set<String> guests = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Take and reset the counters
+         * @return Delta row, or null when nothing was counted
+         */
+        private FunctionDailyStats drain(BucketKey key) {
+            int total = (int) totalCalls.sumThenReset();
+            if (total == 0) {
+                return null;
+            }
+            return FunctionDailyStats.builder()
+                .statDate(key.statDate())
+                .functionType(key.functionType())
+                .totalCalls(total)
+                .authenticatedCalls((int) authenticatedCalls.sumThenReset())
+                .guestCalls((int) guestCalls.sumThenReset())
+                .freePointsConsumed(freePoints.sumThenReset())
+                .fixedPointsConsumed(fixedPoints.sumThenReset())
+                .successCalls((int) successCalls.sumThenReset())
+                .failedCalls((int) failedCalls.sumThenReset())
+                .build();
+        }
+
+        /**
+         * Put back a delta that could not be written
+         */
+        private void restore(FunctionDailyStats row) {
+            totalCalls.add(row.getTotalCalls());
+            authenticatedCalls.add(row.getAuthenticatedCalls());
+            guestCalls.add(row.getGuestCalls());
+            freePoints.add(row.getFreePointsConsumed());
+            fixedPoints.add(row.getFixedPointsConsumed());
+            successCalls.add(row.getSuccessCalls());
+            failedCalls.add(row.getFailedCalls());
+        }
+
+        private List<String> drainUsers() {
+            return drainSet(users);
+        }
+
+        private List<String> drainGuests() {
+            return drainSet(guests);
+        }
+
+        private static List<String> drainSet(Set<String> set) {
+            List<String> members = new ArrayList<>();
+            for (Iterator<String> it = set.iterator(); it.hasNext(); ) {
+                members.add(it.next());
+                it.remove();
+            }
+            return members;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.novelhub.service;
+
+import com.novelhub.entity.FunctionUsageLog;
+import com.novelhub.mapper.FunctionUsageLogMapper;
+import com.novelhub.utils.MpscRingBuffer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Function Usage Recorder
+ * Write-behind pipeline for tb_function_usage_log: business calls only publish an event into a lock-free
+ * ring buffer (no DB latency, never blocks); a background writer drains it with multi-row INSERTs.
+ * Each event is also counted by {@link FunctionStatsAggregator} for tb_function_daily_stats.
+ * 缓冲区满时丢弃事件（业务调用本身不受影响），停机时尽量写完剩余事件
+ */
+@Slf4j
+@Service
+public class FunctionUsageRecorder {
+
+    public static final String STATUS_SUCCESS = "success";
+    public static final String STATUS_FAILED = "failed";
+
+    @Value("${function-usage.buffer-capacity:16384}")
+    private int bufferCapacity;
+
+    @Value("${function-usage.batch-size:500}")
+    private int batchSize;
+
+    @Value("${function-usage.flush-interval-millis:500}")
+    private long flushIntervalMillis;
+
+    @Autowired
+    private FunctionUsageLogMapper functionUsageLogMapper;
+
+    @Autowired
+    private FunctionStatsAggregator functionStatsAggregator;
+
+    private MpscRingBuffer<FunctionUsageLog> buffer;
+
+    private ScheduledExecutorService writer;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        buffer = new MpscRingBuffer<>(bufferCapacity);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("function-usage-");
+        threadFactory.setDaemon(true);
+        writer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        writer.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+
+    /**
+     * Record usage by an authenticated user (non-blocking)
+     * @param userId User ID (null is skipped, never recorded as a guest)
+     * @param functionType Function type ID
+     * @param pointsType Points type used
+     * @param pointsCost Points deducted
+     * @param requestParams Request parameters (JSON), may be null
+     * @param responseStatus success / failed
+     * @param errorMessage Error message when failed
+     */
+    public void recordUser(Long userId, int functionType, Integer pointsType, int pointsCost,
+                           String requestParams, String responseStatus, String errorMessage) {
+        if (userId == null) {
+            // 既无 userId 也无指纹的事件会被 FunctionStatsAggregator 计为访客调用，直接丢弃
+            log.warn("Skipping usage log without user ID: functionType={}", functionType);
+            return;
+        }
+        record(FunctionUsageLog.builder()
+            .userId(userId)
+            .functionType(functionType)
+            .pointsType(pointsType)
+            .pointsCost(pointsCost)
+            .requestParams(requestParams)
+            .responseStatus(responseStatus)
+            .errorMessage(truncate(errorMessage, 500))
+            .build());
+    }
+
+    /**
+     * Record usage by a guest (non-blocking)
+     * @param fingerprint Browser fingerprint
+     * @param functionType Function type ID
+     * @param pointsType Points type (trial)
+     * @param requestParams Request parameters (JSON), may be null
+     * @param responseStatus success / failed
+     * @param errorMessage Error message when failed
+     */
+    public void recordGuest(String fingerprint, int functionType, Integer pointsType,
+                            String requestParams, String responseStatus, String errorMessage) {
+        record(FunctionUsageLog.builder()
+            .fingerprint(truncate(fingerprint, 255))
+            .functionType(functionType)
+            .pointsType(pointsType)
+            .pointsCost(0)
+            .requestParams(requestParams)
+            .responseStatus(responseStatus)
+            .errorMessage(truncate(errorMessage, 500))
+            .build());
+    }
+
+    /**
+     * Record a usage event (non-blocking)
+     * @param event Usage log row (createdAt defaults to now)
+     */
+    public void record(FunctionUsageLog event) {
+        if (event.getCreatedAt() == null) {
+            event.setCreatedAt(LocalDateTime.now());
+        }
+        // 日统计在内存中累计，即使日志因缓冲区满被丢弃也计入
+        functionStatsAggregator.accept(event);
+        if (!buffer.offer(event)) {
+            long total = dropped.incrementAndGet();
+            if (total == 1 || total % 1000 == 0) {
+                log.warn("Function usage buffer is full, dropped {} events so far", total);
+            }
+        }
+    }
+
+    /**
+     * Number of events waiting to be written
+     */
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    /**
+     * Number of events dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private synchronized void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Function usage flush failed", e);
+        }
+    }
+
+    /**
+     * Drain the buffer in batches until it is empty
+     */
+    private void flush() {
+        List<FunctionUsageLog> batch = new ArrayList<>(batchSize);
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            try {
+                functionUsageLogMapper.insertBatch(batch);
+            } catch (Exception e) {
+                // 统计日志写入失败不重试，避免阻塞后续批次
+                log.error("Failed to write {} function usage rows: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+}
@@ -21,6 +21,7 @@ import com.novelhub.utils.JwtUtil;
 import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -49,6 +50,7 @@ public class GoogleAuthService {
             String generatedUsername = "user_" + UUID.randomUUID().toString();
             user.setUsername(generatedUsername);
             userMapper.updateById(user);
+            userCache.evict(user);
             log.info("为用户 {} 自动生成用户名: {}", user.getUserId(), generatedUsername);
         }
     }
@@ -56,6 +58,12 @@ public class GoogleAuthService {
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private LoginActivityRecorder loginActivityRecorder;
+
     @Autowired
     private JwtUtil jwtUtil;
 
@@ -66,6 +74,7 @@ public class GoogleAuthService {
     private DailyClaimService dailyClaimService;
 
     @Autowired
+    @Qualifier("googleRestTemplate")
     private RestTemplate restTemplate;
 
     @Value("${google.client-id}")
@@ -296,13 +305,13 @@ public class GoogleAuthService {
                 }
             }
 
-            // 更新最后登录时间
-            user.setLastLoginTime(LocalDateTime.now());
-            userMapper.updateById(user);
+            // 记录登录（异步批量写入 last_login 和登录日志）
+            loginActivityRecorder.recordLogin(user.getUserId());
 
             // 生成JWT token
             Map<String, Object> extraClaims = new HashMap<>();
             extraClaims.put("email", user.getEmail());
+            extraClaims.put(JwtUtil.CLAIM_USER_ID, user.getUserId());
             String token = jwtUtil.generateToken(user.getUsername(), extraClaims);
             String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
 
@@ -426,13 +435,13 @@ public class GoogleAuthService {
                 }
             }
 
-            // 更新最后登录时间
-            user.setLastLoginTime(LocalDateTime.now());
-            userMapper.updateById(user);
+            // 记录登录（异步批量写入 last_login 和登录日志）
+            loginActivityRecorder.recordLogin(user.getUserId());
 
             // 生成JWT token
             Map<String, Object> extraClaims = new HashMap<>();
             extraClaims.put("email", user.getEmail());
+            extraClaims.put(JwtUtil.CLAIM_USER_ID, user.getUserId());
             String token = jwtUtil.generateToken(user.getUsername(), extraClaims);
             String refreshToken = jwtUtil.generateRefreshToken(user.getUsername());
 
@@ -0,0 +1,375 @@
+package com.novelhub.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.*;
+
+/**
+ * Image Preprocessor
+ * Optional stage before upload: caps the longest side, re-encodes (JPEG, or PNG when the image has alpha)
+ * and drops all metadata. Runs on a small bounded pool so CPU-heavy decoding cannot starve request threads.
+ * 任何无法处理的情况（格式不支持、池满、超时、EXIF 旋转）都返回 null，调用方上传原图
+ */
+@Slf4j
+@Service
+public class ImagePreprocessor {
+
+    @Value("${image.upload.preprocess.enabled:false}")
+    private boolean enabled;
+
+    // 最长边上限（Nano Banana 实际使用的分辨率）
+    @Value("${image.upload.preprocess.max-dimension:2048}")
+    private int maxDimension;
+
+    @Value("${image.upload.preprocess.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    // 超过该像素数的图片不解码，防止解压炸弹
+    @Value("${image.upload.preprocess.max-pixels:50000000}")
+    private long maxPixels;
+
+    @Value("${image.upload.preprocess.threads:2}")
+    private int threads;
+
+    @Value("${image.upload.preprocess.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${image.upload.preprocess.timeout-millis:10000}")
+    private long timeoutMillis;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("image-preprocess-");
+        threadFactory.setDaemon(true);
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        ImageIO.setUseCache(false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Settings that shape the uploaded bytes; part of the upload dedup key, so changing them
+     * does not serve results produced with the old settings
+     */
+    public String settingsVersion() {
+        return enabled ? "pp-" + maxDimension + "-" + jpegQuality : "raw";
+    }
+
+    /**
+     * Pre-process an uploaded image on the bounded pool
+     * @param file Uploaded image
+     * @return Processed image (caller must close it), or null to upload the original
+     */
+    public ProcessedImage preprocess(MultipartFile file) {
+        if (!enabled) {
+            return null;
+        }
+        String contentType = file.getContentType();
+        if (!"image/jpeg".equals(contentType) && !"image/png".equals(contentType)) {
+            return null;
+        }
+
+        CompletableFuture<ProcessedImage> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    result.complete(process(file));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Image preprocess pool is full, uploading original: {}", file.getOriginalFilename());
+            return null;
+        }
+
+        try {
+            return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(result, task);
+            log.warn("Image preprocess timed out after {}ms, uploading original", timeoutMillis);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(result, task);
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Image preprocess failed, uploading original: {}", e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Give up on a task: interrupt it, and delete its temp file whenever (or if already) it produces one
+     */
+    private void abandon(CompletableFuture<ProcessedImage> result, Future<?> task) {
+        result.whenComplete((processed, error) -> {
+            if (processed != null) {
+                processed.close();
+            }
+        });
+        task.cancel(true);
+    }
+
+    private ProcessedImage process(MultipartFile file) throws IOException {
+        if ("image/jpeg".equals(file.getContentType()) && hasExifRotation(file)) {
+            // 去除元数据会丢失 EXIF 方向，旋转过的照片保持原样
+            return null;
+        }
+
+        BufferedImage image;
+        int originalWidth;
+        int originalHeight;
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.getInputStream())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                originalWidth = reader.getWidth(0);
+                originalHeight = reader.getHeight(0);
+                if ((long) originalWidth * originalHeight > maxPixels) {
+                    log.warn("Image too large to preprocess: {}x{}", originalWidth, originalHeight);
+                    return null;
+                }
+
+                // 解码时按整数倍下采样，减少大图的内存占用
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(originalWidth, originalHeight) / maxDimension);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        image = scaleToFit(image);
+        boolean alpha = image.getColorModel().hasAlpha();
+        String format = alpha ? "png" : "jpeg";
+
+        Path output = Files.createTempFile("novelhub-img-", alpha ? ".png" : ".jpg");
+        try {
+            write(image, format, output);
+            long size = Files.size(output);
+            boolean resized = image.getWidth() != originalWidth || image.getHeight() != originalHeight;
+            if (!resized && size >= file.getSize()) {
+                // 重新编码没有变小，直接使用原图
+                Files.deleteIfExists(output);
+                return null;
+            }
+
+            log.debug("Image preprocessed: {} {} bytes -> {}x{} {} {} bytes", file.getOriginalFilename(),
+                file.getSize(), image.getWidth(), image.getHeight(), format, size);
+            return new ProcessedImage(output, "image/" + format, rename(file.getOriginalFilename(), alpha ? "png" : "jpg"), size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+    }
+
+    /**
+     * Scale so that the longest side is at most maxDimension (never upscales)
+     */
+    private BufferedImage scaleToFit(BufferedImage source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int longest = Math.max(width, height);
+        boolean alpha = source.getColorModel().hasAlpha();
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        int targetWidth = width;
+        int targetHeight = height;
+        if (longest > maxDimension) {
+            double scale = (double) maxDimension / longest;
+            targetWidth = Math.max(1, (int) Math.round(width * scale));
+            targetHeight = Math.max(1, (int) Math.round(height * scale));
+        }
+        if (targetWidth == width && targetHeight == height && source.getType() == type) {
+            return source;
+        }
+
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private void write(BufferedImage image, String format, Path output) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(output.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpeg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            // 不写入任何 metadata
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Check the EXIF orientation tag (APP1) of a JPEG; true if the image must be rotated for display
+     */
+    private boolean hasExifRotation(MultipartFile file) throws IOException {
+        try (DataInputStream in = new DataInputStream(file.getInputStream())) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return false;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) {
+                    return false;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (marker != 0xFFE1) {
+                    in.skipNBytes(length);
+                    continue;
+                }
+                byte[] app1 = in.readNBytes(length);
+                return exifOrientation(app1) > 1;
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private int exifOrientation(byte[] app1) {
+        // "Exif\0\0" + TIFF header
+        if (app1.length < 14 || app1[0] != 'E' || app1[1] != 'x' || app1[2] != 'i' || app1[3] != 'f') {
+            return 0;
+        }
+        int tiff = 6;
+        boolean littleEndian = app1[tiff] == 'I';
+        int ifd = tiff + readInt(app1, tiff + 4, littleEndian);
+        if (ifd + 2 > app1.length) {
+            return 0;
+        }
+        int entries = readShort(app1, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > app1.length) {
+                return 0;
+            }
+            if (readShort(app1, entry, littleEndian) == 0x0112) {
+                return readShort(app1, entry + 8, littleEndian);
+            }
+        }
+        return 0;
+    }
+
+    private int readShort(byte[] b, int offset, boolean littleEndian) {
+        return littleEndian
+            ? (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8
+            : (b[offset] & 0xFF) << 8 | (b[offset + 1] & 0xFF);
+    }
+
+    private int readInt(byte[] b, int offset, boolean littleEndian) {
+        return littleEndian
+            ? readShort(b, offset, true) | readShort(b, offset + 2, true) << 16
+            : readShort(b, offset, false) << 16 | readShort(b, offset + 2, false);
+    }
+
+    private String rename(String filename, String extension) {
+        if (filename == null || filename.isEmpty()) {
+            return "image." + extension;
+        }
+        int dot = filename.lastIndexOf('.');
+        return (dot > 0 ? filename.substring(0, dot) : filename) + "." + extension;
+    }
+
+    /**
+     * Re-encoded image in a temp file; close() deletes the file
+     */
+    public static class ProcessedImage implements AutoCloseable {
+        private final Path path;
+        private final String contentType;
+        private final String filename;
+        private final long size;
+
+        public ProcessedImage(Path path, String contentType, String filename, long size) {
+            this.path = path;
+            this.contentType = contentType;
+            this.filename = filename;
+            this.size = size;
+        }
+
+        public Resource getResource() {
+            // 保留改名后的文件名，用于 multipart 的 Content-Disposition
+            return new FileSystemResource(path) {
+                @Override
+                public String getFilename() {
+                    return filename;
+                }
+            };
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public void close() {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("Failed to delete temp image {}: {}", path, e.getMessage());
+            }
+        }
+    }
+}
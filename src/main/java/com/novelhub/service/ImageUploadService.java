@@ -2,8 +2,14 @@ package com.novelhub.service;
 
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.novelhub.utils.IntegrationGuard;
+import com.novelhub.utils.RedisUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
@@ -12,9 +18,13 @@ import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.Base64;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Image Upload Service
@@ -38,14 +48,46 @@ public class ImageUploadService {
     @Value("${image.upload.max-size:10485760}") // 10MB default
     private long maxFileSize;
 
+    // 内容寻址去重：相同内容（SHA-256）的图片直接返回已上传的 URL
+    @Value("${image.upload.dedup.enabled:true}")
+    private boolean dedupEnabled;
+
+    @Value("${image.upload.dedup.ttl-days:30}")
+    private long dedupTtlDays;
+
+    @Value("${image.upload.dedup.local-size:1000}")
+    private long dedupLocalSize;
+
+    private static final String DEDUP_KEY_PREFIX = "image_upload:";
+
     private final RestTemplate restTemplate;
 
-    public ImageUploadService(RestTemplate restTemplate) {
+    private final IntegrationGuard integrationGuard;
+
+    private final RedisUtil redisUtil;
+
+    private final ImagePreprocessor imagePreprocessor;
+
+    // Local LRU in front of Redis (hash -> upload result)
+    private Cache<String, Map<String, Object>> dedupCache;
+
+    public ImageUploadService(@Qualifier("imgbbRestTemplate") RestTemplate restTemplate,
+                              IntegrationGuard integrationGuard,
+                              RedisUtil redisUtil,
+                              ImagePreprocessor imagePreprocessor) {
         this.restTemplate = restTemplate;
+        this.integrationGuard = integrationGuard;
+        this.redisUtil = redisUtil;
+        this.imagePreprocessor = imagePreprocessor;
     }
 
     @jakarta.annotation.PostConstruct
     public void init() {
+        dedupCache = Caffeine.newBuilder()
+            .maximumSize(dedupLocalSize)
+            .expireAfterWrite(dedupTtlDays, TimeUnit.DAYS)
+            .build();
+
         // Trim and validate API key
         if (imgbbApiKeyRaw != null) {
             imgbbApiKey = imgbbApiKeyRaw.trim();
@@ -100,7 +142,28 @@ public class ImageUploadService {
 
             // Route to appropriate upload provider
             if ("imgbb".equalsIgnoreCase(uploadProvider)) {
-                return uploadToImgBB(file);
+                if (!dedupEnabled) {
+                    return preprocessAndUpload(file);
+                }
+
+                // Same content, same pre-processing already hosted - return existing URL without
+                // decoding the image or contacting the image host
+                String dedupKey = DEDUP_KEY_PREFIX + uploadProvider.toLowerCase() + ":"
+                    + imagePreprocessor.settingsVersion() + ":sha256:" + sha256Hex(file);
+                Map<String, Object> existing = findUploaded(dedupKey);
+                if (existing != null) {
+                    log.debug("Image upload deduplicated: {} -> {}", file.getOriginalFilename(), existing.get("url"));
+                    Map<String, Object> cachedResult = new HashMap<>(existing);
+                    cachedResult.put("success", true);
+                    cachedResult.put("deduplicated", true);
+                    return cachedResult;
+                }
+
+                Map<String, Object> uploadResult = preprocessAndUpload(file);
+                if (Boolean.TRUE.equals(uploadResult.get("success"))) {
+                    rememberUploaded(dedupKey, uploadResult);
+                }
+                return uploadResult;
             } else {
                 result.put("success", false);
                 result.put("error", "Unsupported upload provider: " + uploadProvider);
@@ -115,10 +178,76 @@ public class ImageUploadService {
         }
     }
 
+    /**
+     * Optional pre-processing (downscale / re-encode / strip metadata), then upload
+     * Falls back to the original file whenever pre-processing is disabled or skipped.
+     */
+    private Map<String, Object> preprocessAndUpload(MultipartFile file) {
+        try (ImagePreprocessor.ProcessedImage processed = imagePreprocessor.preprocess(file)) {
+            if (processed != null) {
+                return uploadToImgBB(processed.getResource(), processed.getContentType(),
+                    processed.getFilename(), processed.getSize());
+            }
+        }
+        return uploadToImgBB(file.getResource(), file.getContentType(), file.getOriginalFilename(), file.getSize());
+    }
+
+    /**
+     * Hash file content with SHA-256 while streaming it (constant memory)
+     * Runs before pre-processing, so a repeat upload costs one sequential read and a cache lookup.
+     */
+    private String sha256Hex(MultipartFile file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[8192];
+        try (InputStream in = file.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Look up a previous upload by content hash: local LRU first, then Redis
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> findUploaded(String dedupKey) {
+        Map<String, Object> uploaded = dedupCache.getIfPresent(dedupKey);
+        if (uploaded != null) {
+            return uploaded;
+        }
+        Object cached = redisUtil.get(dedupKey);
+        if (cached instanceof Map) {
+            uploaded = (Map<String, Object>) cached;
+            dedupCache.put(dedupKey, uploaded);
+            return uploaded;
+        }
+        return null;
+    }
+
+    /**
+     * Remember a successful upload under its content hash
+     */
+    private void rememberUploaded(String dedupKey, Map<String, Object> uploadResult) {
+        Map<String, Object> uploaded = new HashMap<>();
+        uploaded.put("url", uploadResult.get("url"));
+        uploaded.put("url_viewer", uploadResult.get("url_viewer"));
+        uploaded.put("id", uploadResult.get("id"));
+        dedupCache.put(dedupKey, uploaded);
+        try {
+            redisUtil.set(dedupKey, uploaded, dedupTtlDays, TimeUnit.DAYS);
+        } catch (Exception e) {
+            log.warn("Failed to store upload dedup entry: {}", e.getMessage());
+        }
+    }
+
     /**
      * Upload image to ImgBB
+     * Uses ImgBB's binary multipart mode: the file is streamed from the resource into the request body,
+     * so heap usage per upload does not grow with the image size (no byte[] / Base64 copies).
      */
-    private Map<String, Object> uploadToImgBB(MultipartFile file) throws IOException {
+    private Map<String, Object> uploadToImgBB(Resource image, String contentType, String filename, long size) {
         Map<String, Object> result = new HashMap<>();
 
         // Check API key
@@ -129,31 +258,34 @@ public class ImageUploadService {
             return result;
         }
 
-        // Convert image to Base64
-        byte[] fileBytes = file.getBytes();
-        String base64Image = Base64.getEncoder().encodeToString(fileBytes);
+        // Image part backed by the uploaded file's InputStream (streamed, not buffered)
+        HttpHeaders partHeaders = new HttpHeaders();
+        partHeaders.setContentType(MediaType.parseMediaType(contentType));
+        HttpEntity<Resource> imagePart = new HttpEntity<>(image, partHeaders);
 
-        // Prepare request
-        MultiValueMap<String, String> requestBody = new LinkedMultiValueMap<>();
+        // Prepare multipart request
+        MultiValueMap<String, Object> requestBody = new LinkedMultiValueMap<>();
         requestBody.add("key", imgbbApiKey);
-        requestBody.add("image", base64Image);
-        requestBody.add("name", file.getOriginalFilename());
+        requestBody.add("image", imagePart);
+        if (filename != null) {
+            requestBody.add("name", filename);
+        }
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
 
-        HttpEntity<MultiValueMap<String, String>> requestEntity = new HttpEntity<>(requestBody, headers);
+        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
 
         // Call ImgBB API
         try {
-            log.debug("Uploading image to ImgBB: {} (size: {} bytes)", file.getOriginalFilename(), file.getSize());
+            log.debug("Uploading image to ImgBB: {} (size: {} bytes)", filename, size);
             
-            ResponseEntity<String> response = restTemplate.exchange(
+            ResponseEntity<String> response = integrationGuard.execute("imgbb", () -> restTemplate.exchange(
                 imgbbApiUrl,
                 HttpMethod.POST,
                 requestEntity,
                 String.class
-            );
+            ));
 
             if (response.getStatusCode() == HttpStatus.OK) {
                 JSONObject responseJson = JSON.parseObject(response.getBody());
@@ -186,6 +318,11 @@ public class ImageUploadService {
                 return result;
             }
 
+        } catch (IntegrationGuard.IntegrationUnavailableException e) {
+            // Bulkhead full or circuit open - fail fast without calling ImgBB
+            result.put("success", false);
+            result.put("error", "Image upload service is temporarily unavailable, please try again later");
+            return result;
         } catch (Exception e) {
             log.error("Error calling ImgBB API", e);
             result.put("success", false);
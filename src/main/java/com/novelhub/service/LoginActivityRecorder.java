@@ -0,0 +1,249 @@
+package com.novelhub.service;
+
+import com.novelhub.entity.UserLoginLog;
+import com.novelhub.mapper.UserLoginLogMapper;
+import com.novelhub.mapper.UserMapper;
+import com.novelhub.utils.FingerprintUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Login Activity Recorder
+ * Write-behind pipeline for logins: the login path only enqueues an event; a background flusher writes
+ * tb_user_login_log with multi-row INSERTs and coalesces last_login_time/ip into one UPDATE per batch.
+ * 队列满时丢弃事件（登录本身不受影响），停机时尽量写完剩余事件
+ */
+@Slf4j
+@Service
+public class LoginActivityRecorder {
+
+    private static final int LOGIN_SUCCESS = 1;
+
+    @Value("${login-activity.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${login-activity.batch-size:200}")
+    private int batchSize;
+
+    @Value("${login-activity.flush-interval-millis:1000}")
+    private long flushIntervalMillis;
+
+    @Autowired
+    private UserLoginLogMapper userLoginLogMapper;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    private BlockingQueue<UserLoginLog> queue;
+
+    private ScheduledExecutorService flusher;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("login-activity-");
+        threadFactory.setDaemon(true);
+        flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        flusher.scheduleWithFixedDelay(this::flushSafely, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+
+    /**
+     * Record a successful login for the current HTTP request, if any
+     * @param userId User ID
+     */
+    public void recordLogin(Long userId) {
+        HttpServletRequest request = null;
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            request = attributes.getRequest();
+        }
+        recordLogin(userId, request);
+    }
+
+    /**
+     * Record a successful login from an HTTP request (IP, user agent, fingerprint)
+     * @param userId User ID
+     * @param request Login request
+     */
+    public void recordLogin(Long userId, HttpServletRequest request) {
+        if (request == null) {
+            recordLogin(userId, null, null, null);
+            return;
+        }
+        recordLogin(userId, clientIp(request), request.getHeader("User-Agent"),
+            FingerprintUtil.extractFingerprint(request));
+    }
+
+    /**
+     * Record a successful login (non-blocking)
+     * @param userId User ID
+     * @param loginIp Client IP
+     * @param userAgent User-Agent header
+     * @param fingerprint Browser fingerprint
+     */
+    public void recordLogin(Long userId, String loginIp, String userAgent, String fingerprint) {
+        if (userId == null) {
+            return;
+        }
+        UserLoginLog event = UserLoginLog.builder()
+            .userId(userId)
+            .loginTime(LocalDateTime.now())
+            .loginIp(truncate(loginIp, 50))
+            .device(userAgent == null ? null : device(userAgent))
+            .browser(userAgent == null ? null : browser(userAgent))
+            .os(userAgent == null ? null : os(userAgent))
+            .fingerprint(truncate(fingerprint, 255))
+            .loginStatus(LOGIN_SUCCESS)
+            .build();
+        if (!queue.offer(event)) {
+            long total = dropped.incrementAndGet();
+            if (total == 1 || total % 1000 == 0) {
+                log.warn("Login activity queue is full, dropped {} events so far", total);
+            }
+        }
+    }
+
+    /**
+     * Number of events waiting to be written
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Number of events dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Login activity flush failed", e);
+        }
+    }
+
+    /**
+     * Drain the queue in batches until it is empty
+     */
+    private void flush() {
+        List<UserLoginLog> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<UserLoginLog> batch) {
+        try {
+            userLoginLogMapper.insertBatch(batch);
+        } catch (Exception e) {
+            // 审计日志写入失败不重试，避免阻塞后续批次
+            log.error("Failed to write {} login log rows: {}", batch.size(), e.getMessage());
+        }
+
+        // 同一用户在一个批次内只保留最后一次登录
+        Map<Long, UserLoginLog> latest = new LinkedHashMap<>();
+        for (UserLoginLog event : batch) {
+            latest.put(event.getUserId(), event);
+        }
+        try {
+            // last_login_* 不在缓存的用户资料中，无需失效 UserCache
+            userMapper.updateLastLoginBatch(new ArrayList<>(latest.values()));
+        } catch (Exception e) {
+            log.error("Failed to update last login for {} users: {}", latest.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Client IP as resolved by the container
+     * X-Forwarded-For is honoured only from trusted proxies (server.forward-headers-strategy=native with
+     * server.tomcat.remoteip.internal-proxies), which take the right-most untrusted hop; raw headers are forgeable.
+     */
+    private String clientIp(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
+
+    private String device(String userAgent) {
+        if (userAgent.contains("iPad") || userAgent.contains("Tablet")) {
+            return "Tablet";
+        }
+        return userAgent.contains("Mobi") ? "Mobile" : "Desktop";
+    }
+
+    private String browser(String userAgent) {
+        if (userAgent.contains("Edg/")) {
+            return "Edge";
+        }
+        if (userAgent.contains("OPR/") || userAgent.contains("Opera")) {
+            return "Opera";
+        }
+        if (userAgent.contains("Firefox/")) {
+            return "Firefox";
+        }
+        if (userAgent.contains("Chrome/") || userAgent.contains("CriOS/")) {
+            return "Chrome";
+        }
+        if (userAgent.contains("Safari/")) {
+            return "Safari";
+        }
+        return truncate(userAgent, 100);
+    }
+
+    private String os(String userAgent) {
+        if (userAgent.contains("Windows")) {
+            return "Windows";
+        }
+        if (userAgent.contains("Android")) {
+            return "Android";
+        }
+        if (userAgent.contains("iPhone") || userAgent.contains("iPad")) {
+            return "iOS";
+        }
+        if (userAgent.contains("Mac OS")) {
+            return "macOS";
+        }
+        if (userAgent.contains("Linux")) {
+            return "Linux";
+        }
+        return null;
+    }
+
+    private String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+}
@@ -0,0 +1,230 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.novelhub.entity.PointDetail;
+import com.novelhub.entity.UserPoint;
+import com.novelhub.utils.RedisUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Point Balance Store
+ * Hot copy of tb_user_points balances in a Redis hash per user (points:balance:{userId}).
+ * Every debit/credit is one Lua script that updates the hash and appends the ledger entry to
+ * {@link PointLedgerWriter#LEDGER_KEY} atomically; {@link PointLedgerWriter} writes tb_point_detail
+ * and projects the balances back to tb_user_points in batches.
+ * 余额以 Redis 为准：哈希不存在时从 MySQL 加载（TTL 远大于账本刷盘延迟，过期时 MySQL 已追平）
+ */
+@Slf4j
+@Service
+public class PointBalanceStore {
+
+    private static final String BALANCE_KEY_PREFIX = "points:balance:";
+
+    private static final String CREDITED_KEY_PREFIX = "points:credited:";
+
+    private static final long NOT_LOADED = -1;
+
+    /**
+     * Debit with priority free -> sub -> fixed
+     * KEYS[1] = balance hash, KEYS[2] = ledger list; ARGV[1] = amount, ARGV[2] = detail JSON, ARGV[3] = TTL seconds
+     * Returns {-1} when the hash is not loaded, {0, 0, available} when insufficient, {1, pointsType, remaining}
+     */
+    private static final String DEBIT_SCRIPT =
+        "local b = redis.call('HMGET', KEYS[1], 'points', 'fixed_points', 'sub_points', 'sub_points_left', 'free_points') " +
+        "if not b[1] then return {-1} end " +
+        "local fixed, sub, free = tonumber(b[1]), tonumber(b[4]), tonumber(b[5]) " +
+        "local remaining = tonumber(ARGV[1]) " +
+        "if free + sub + fixed < remaining then return {0, 0, free + sub + fixed} end " +
+        "local pointsType = 0 " +
+        "if remaining > 0 and free > 0 then " +
+        "  local d = math.min(remaining, free) free = free - d remaining = remaining - d pointsType = 0 " +
+        "end " +
+        "if remaining > 0 and sub > 0 then " +
+        "  local d = math.min(remaining, sub) sub = sub - d remaining = remaining - d pointsType = 2 " +
+        "end " +
+        "if remaining > 0 and fixed > 0 then " +
+        "  local d = math.min(remaining, fixed) fixed = fixed - d remaining = remaining - d pointsType = 1 " +
+        "end " +
+        "redis.call('HMSET', KEYS[1], 'points', fixed, 'sub_points_left', sub, 'free_points', free) " +
+        "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[3])) " +
+        "redis.call('RPUSH', KEYS[2], cjson.encode({detail = ARGV[2], pointsType = pointsType, " +
+        "  balance = {fixed, tonumber(b[2]), tonumber(b[3]), sub, free}})) " +
+        "return {1, pointsType, free + sub + fixed}";
+
+    /**
+     * Credit per-field deltas
+     * KEYS[1] = balance hash, KEYS[2] = ledger list, KEYS[3] = idempotency marker (optional);
+     * ARGV[1..5] = deltas (points, fixed_points, sub_points, sub_points_left, free_points), ARGV[6] = detail JSON, ARGV[7] = TTL seconds
+     * Returns {-1} when the hash is not loaded, {0, remaining} when the marker already exists, otherwise {1, remaining}
+     */
+    private static final String CREDIT_SCRIPT =
+        "if redis.call('EXISTS', KEYS[1]) == 0 then return {-1} end " +
+        "if KEYS[3] and not redis.call('SET', KEYS[3], '1', 'NX', 'EX', tonumber(ARGV[7])) then " +
+        "  local c = redis.call('HMGET', KEYS[1], 'points', 'sub_points_left', 'free_points') " +
+        "  return {0, tonumber(c[1]) + tonumber(c[2]) + tonumber(c[3])} " +
+        "end " +
+        "local fields = {'points', 'fixed_points', 'sub_points', 'sub_points_left', 'free_points'} " +
+        "local b = {} " +
+        "for i = 1, 5 do " +
+        "  b[i] = tonumber(redis.call('HINCRBY', KEYS[1], fields[i], tonumber(ARGV[i]))) " +
+        "end " +
+        "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[7])) " +
+        "redis.call('RPUSH', KEYS[2], cjson.encode({detail = ARGV[6], balance = b})) " +
+        "return {1, b[1] + b[4] + b[5]}";
+
+    /**
+     * Load balances only if the hash does not exist yet (a concurrent debit must never be overwritten)
+     * KEYS[1] = balance hash; ARGV[1..5] = balances, ARGV[6] = TTL seconds
+     */
+    private static final String LOAD_SCRIPT =
+        "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+        "redis.call('HMSET', KEYS[1], 'points', ARGV[1], 'fixed_points', ARGV[2], 'sub_points', ARGV[3], " +
+        "  'sub_points_left', ARGV[4], 'free_points', ARGV[5]) " +
+        "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[6])) " +
+        "return 1";
+
+    private static final String READ_SCRIPT =
+        "return redis.call('HMGET', KEYS[1], 'points', 'fixed_points', 'sub_points', 'sub_points_left', 'free_points')";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> DEBIT = new DefaultRedisScript<>(DEBIT_SCRIPT, List.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CREDIT = new DefaultRedisScript<>(CREDIT_SCRIPT, List.class);
+
+    private static final DefaultRedisScript<Long> LOAD = new DefaultRedisScript<>(LOAD_SCRIPT, Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> READ = new DefaultRedisScript<>(READ_SCRIPT, List.class);
+
+    @Value("${points.balance.ttl-days:30}")
+    private long ttlDays;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    /**
+     * Atomically debit points (free -> sub -> fixed) and enqueue the ledger entry
+     * @param userId User ID
+     * @param amount Points to consume
+     * @param detail Ledger row (ledgerId is assigned here, pointsType is filled in from the debit)
+     * @param loader Loads (or creates) the MySQL row when the balance is not in Redis yet
+     * @return long[]{success (1/0), pointsType, remaining (or available when insufficient)}
+     */
+    public long[] debit(Long userId, int amount, PointDetail detail, Function<Long, UserPoint> loader) {
+        detail.setLedgerId(UUID.randomUUID().toString());
+        List<?> result = executeLoaded(userId, loader, () -> redisUtil.execute(DEBIT, keys(userId),
+            amount, JSON.toJSONString(detail), ttlSeconds()));
+        return new long[]{toLong(result.get(0)), toLong(result.get(1)), toLong(result.get(2))};
+    }
+
+    /**
+     * Atomically apply per-field deltas and enqueue the ledger entry
+     * With an idempotency key the credit is applied at most once per user and key (e.g. an order number),
+     * so a redelivered payment webhook whose first transaction rolled back does not credit twice.
+     * @param userId User ID
+     * @param delta Deltas per balance column (null fields = 0)
+     * @param detail Ledger row (ledgerId is assigned here)
+     * @param idempotencyKey Credit-once key, or null
+     * @param loader Loads (or creates) the MySQL row when the balance is not in Redis yet
+     * @return long[]{applied (1/0, 0 = already credited under this key), remaining points (free + sub left + fixed)}
+     */
+    public long[] credit(Long userId, UserPoint delta, PointDetail detail, String idempotencyKey,
+                         Function<Long, UserPoint> loader) {
+        List<String> keys = idempotencyKey == null ? keys(userId)
+            : List.of(BALANCE_KEY_PREFIX + userId, PointLedgerWriter.LEDGER_KEY,
+                CREDITED_KEY_PREFIX + userId + ":" + idempotencyKey);
+        detail.setLedgerId(UUID.randomUUID().toString());
+        List<?> result = executeLoaded(userId, loader, () -> redisUtil.execute(CREDIT, keys,
+            valueOf(delta.getPoints()), valueOf(delta.getFixedPoints()), valueOf(delta.getSubPoints()),
+            valueOf(delta.getSubPointsLeft()), valueOf(delta.getFreePoints()),
+            JSON.toJSONString(detail), ttlSeconds()));
+        return new long[]{toLong(result.get(0)), toLong(result.get(1))};
+    }
+
+    /**
+     * Current balances from Redis
+     * @param userId User ID
+     * @return Balance columns only (userId set), or null when not loaded
+     */
+    public UserPoint getBalance(Long userId) {
+        List<?> values = redisUtil.execute(READ, Collections.singletonList(BALANCE_KEY_PREFIX + userId));
+        if (values == null || values.isEmpty() || values.get(0) == null) {
+            return null;
+        }
+        return UserPoint.builder()
+            .userId(userId)
+            .points(toInt(values.get(0)))
+            .fixedPoints(toInt(values.get(1)))
+            .subPoints(toInt(values.get(2)))
+            .subPointsLeft(toInt(values.get(3)))
+            .freePoints(toInt(values.get(4)))
+            .build();
+    }
+
+    /**
+     * Run a script; if the balance is not loaded, load it from MySQL and run it once more
+     */
+    private List<?> executeLoaded(Long userId, Function<Long, UserPoint> loader, Supplier<List<?>> script) {
+        List<?> result = script.get();
+        if (isLoaded(result)) {
+            return result;
+        }
+        load(userId, loader.apply(userId));
+        result = script.get();
+        if (!isLoaded(result)) {
+            throw new RuntimeException("Point balance not loaded for user: " + userId);
+        }
+        return result;
+    }
+
+    private void load(Long userId, UserPoint up) {
+        if (up == null) {
+            throw new RuntimeException("User points not found: " + userId);
+        }
+        Long loaded = redisUtil.execute(LOAD, Collections.singletonList(BALANCE_KEY_PREFIX + userId),
+            valueOf(up.getPoints()), valueOf(up.getFixedPoints()), valueOf(up.getSubPoints()),
+            valueOf(up.getSubPointsLeft()), valueOf(up.getFreePoints()), ttlSeconds());
+        if (loaded != null && loaded == 1) {
+            log.debug("Loaded point balance for user {} into Redis", userId);
+        }
+    }
+
+    private boolean isLoaded(List<?> result) {
+        if (result == null || result.isEmpty()) {
+            throw new IllegalStateException("Unexpected script result: " + result);
+        }
+        return toLong(result.get(0)) != NOT_LOADED;
+    }
+
+    private List<String> keys(Long userId) {
+        return List.of(BALANCE_KEY_PREFIX + userId, PointLedgerWriter.LEDGER_KEY);
+    }
+
+    private long ttlSeconds() {
+        return TimeUnit.DAYS.toSeconds(ttlDays);
+    }
+
+    private int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(String.valueOf(value));
+    }
+
+    private int toInt(Object value) {
+        return value == null ? 0 : (int) toLong(value);
+    }
+}
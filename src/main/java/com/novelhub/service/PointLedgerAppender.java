@@ -0,0 +1,291 @@
+package com.novelhub.service;
+
+import com.novelhub.entity.PointDetail;
+import com.novelhub.mapper.PointDetailMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Point Ledger Appender
+ * Group commit for MySQL point mutations: callers hand over a balance update plus its tb_point_detail row and
+ * block until the group containing it is committed. A single committer collects up to batch-size requests
+ * (or whatever arrives within max-delay-millis of the first), runs their balance updates, inserts all ledger
+ * rows with one multi-row INSERT and commits once - one fsync and a handful of round-trips per group.
+ * Only used when points.balance.enabled=false: with the Redis balance store (the default) requests are
+ * acknowledged once Redis has the debit and its ledger entry, and MySQL durability follows asynchronously.
+ * Groups always run in their own transaction (REQUIRES_NEW), also when a full queue makes the caller commit
+ * inline, so a caller's open transaction is never joined.
+ * 整组提交失败时逐条重试，单个请求的错误不会拖垮同组的其他请求
+ */
+@Slf4j
+@Service
+public class PointLedgerAppender {
+
+    private static final int PENDING = 0;
+    private static final int CLAIMED = 1;
+    private static final int CANCELLED = 2;
+
+    @Value("${points.ledger.append.batch-size:100}")
+    private int batchSize;
+
+    @Value("${points.ledger.append.max-delay-millis:5}")
+    private long maxDelayMillis;
+
+    @Value("${points.ledger.append.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${points.ledger.append.timeout-millis:5000}")
+    private long timeoutMillis;
+
+    @Autowired
+    private PointDetailMapper pointDetailMapper;
+
+    @Autowired
+    private PointRollupService pointRollupService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private TransactionTemplate transactionTemplate;
+
+    private BlockingQueue<Request> queue;
+
+    private ExecutorService committer;
+
+    private volatile boolean running;
+
+    private Timer flushTimer;
+
+    private DistributionSummary batchSizeSummary;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            flushTimer = Timer.builder("points.ledger.flush").tag("writer", "mysql").register(registry);
+            batchSizeSummary = DistributionSummary.builder("points.ledger.batch.size").tag("writer", "mysql").register(registry);
+            Gauge.builder("points.ledger.append.queue.size", queue, BlockingQueue::size).register(registry);
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("point-ledger-commit-");
+        threadFactory.setDaemon(true);
+        committer = Executors.newSingleThreadExecutor(threadFactory);
+        running = true;
+        committer.execute(this::run);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        committer.shutdown();
+        try {
+            committer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Request> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            commit(remaining);
+        }
+    }
+
+    /**
+     * Apply a balance update and append its ledger row; returns once the group containing it is committed
+     * @param detail Ledger row (inserted only when the update succeeds)
+     * @param balanceUpdate Balance statement(s), run inside the group transaction; false = not applied (e.g. conditional debit missed)
+     * @return Result of balanceUpdate, durable when true
+     * @throws RuntimeException when the group could not be committed in time (the update was not applied)
+     */
+    public boolean append(PointDetail detail, BooleanSupplier balanceUpdate) {
+        Request request = new Request(detail, balanceUpdate);
+        if (!running || !queue.offer(request)) {
+            // 队列已满：在调用线程上单独提交
+            commit(Collections.singletonList(request));
+        }
+
+        try {
+            return request.result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (request.state.compareAndSet(PENDING, CANCELLED)) {
+                throw new RuntimeException("Point ledger commit timed out");
+            }
+            // 已被提交线程取走，等待其结果
+            return await(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (request.state.compareAndSet(PENDING, CANCELLED)) {
+                throw new RuntimeException("Interrupted while waiting for point ledger commit");
+            }
+            return await(request);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private boolean await(Request request) {
+        try {
+            return request.result.join();
+        } catch (Exception e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e);
+        }
+    }
+
+    private RuntimeException unwrap(ExecutionException e) {
+        return e.getCause() instanceof RuntimeException
+            ? (RuntimeException) e.getCause()
+            : new RuntimeException("Point ledger commit failed", e.getCause());
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - batch.size());
+
+                // 等待至多 max-delay 凑满一组
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    Request next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Point ledger committer failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Commit one group; on failure retry each request in its own transaction
+     */
+    private void commit(List<Request> requests) {
+        List<Request> claimed = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            if (request.state.compareAndSet(PENDING, CLAIMED)) {
+                claimed.add(request);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        // 按用户顺序加行锁（稳定排序，同一用户的请求保持先后），避免多节点的分组事务互相死锁
+        claimed.sort(Comparator.comparing(r -> r.detail.getUserId(), Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        long start = System.nanoTime();
+        try {
+            List<Boolean> results = transactionTemplate.execute(status -> apply(claimed));
+            record(claimed.size(), start);
+            for (int i = 0; i < claimed.size(); i++) {
+                claimed.get(i).result.complete(results.get(i));
+            }
+            return;
+        } catch (Exception e) {
+            if (claimed.size() == 1) {
+                claimed.get(0).result.completeExceptionally(e);
+                return;
+            }
+            log.warn("Point ledger group of {} failed, committing one by one: {}", claimed.size(), e.getMessage());
+        }
+
+        for (Request request : claimed) {
+            long single = System.nanoTime();
+            try {
+                Boolean result = transactionTemplate.execute(status -> apply(Collections.singletonList(request)).get(0));
+                record(1, single);
+                request.result.complete(result);
+            } catch (Exception e) {
+                request.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private List<Boolean> apply(List<Request> requests) {
+        List<Boolean> results = new ArrayList<>(requests.size());
+        List<PointDetail> details = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            boolean applied = request.balanceUpdate.getAsBoolean();
+            results.add(applied);
+            if (applied) {
+                details.add(request.detail);
+            }
+        }
+        if (!details.isEmpty()) {
+            pointDetailMapper.insertBatch(details);
+            pointRollupService.apply(details);
+        }
+        return results;
+    }
+
+    private void record(int size, long startNanos) {
+        if (flushTimer != null) {
+            flushTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            batchSizeSummary.record(size);
+        }
+    }
+
+    private static class Request {
+
+        private final PointDetail detail;
+
+        private final BooleanSupplier balanceUpdate;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        private Request(PointDetail detail, BooleanSupplier balanceUpdate) {
+            this.detail = detail;
+            this.balanceUpdate = balanceUpdate;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONObject;
+import com.novelhub.entity.PointDetail;
+import com.novelhub.entity.UserPoint;
+import com.novelhub.mapper.PointDetailMapper;
+import com.novelhub.mapper.UserPointMapper;
+import com.novelhub.utils.RedisUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point Ledger Writer
+ * Drains the ledger entries appended by {@link PointBalanceStore} (Redis list, so they survive a restart),
+ * inserts tb_point_detail rows (one multi-row INSERT) and writes each user's latest balance snapshot back to tb_user_points,
+ * one transaction per batch. Entries are moved to a processing list before the transaction and removed from it only
+ * after the commit, so a crash in between replays them (at-least-once) instead of losing them; each entry carries a
+ * ledger id (unique in tb_point_detail), so a replayed entry is neither inserted nor rolled up twice.
+ * A Redis lock held for one batch at a time keeps a single writer across nodes, so snapshots are applied in order.
+ * 数据库不可用时批次留在 processing 列表中，下次刷盘优先重试；单条数据错误（如字段超长）移入死信列表，不阻塞后续账本
+ */
+@Slf4j
+@Service
+public class PointLedgerWriter {
+
+    /**
+     * Pending ledger entries: {detail: PointDetail JSON, pointsType?, balance: [points, fixed, sub, subLeft, free]}
+     */
+    public static final String LEDGER_KEY = "points:ledger";
+
+    /**
+     * Entries taken by the current (or a crashed) writer and not yet committed to MySQL
+     */
+    private static final String PROCESSING_KEY = "points:ledger:processing";
+
+    private static final String DEAD_LETTER_KEY = "points:ledger:dead";
+
+    private static final String LOCK_KEY = "points:ledger:lock";
+
+    /**
+     * Take the next batch: leftovers in the processing list first (crash or failed batch), otherwise
+     * move up to ARGV[1] entries from the ledger head to the processing list
+     * KEYS[1] = ledger, KEYS[2] = processing
+     */
+    private static final String CLAIM_SCRIPT =
+        "local entries = redis.call('LRANGE', KEYS[2], 0, tonumber(ARGV[1]) - 1) " +
+        "if #entries > 0 then return entries end " +
+        "for i = 1, tonumber(ARGV[1]) do " +
+        "  local entry = redis.call('LMOVE', KEYS[1], KEYS[2], 'LEFT', 'RIGHT') " +
+        "  if not entry then break end " +
+        "  entries[#entries + 1] = entry " +
+        "end " +
+        "return entries";
+
+    /**
+     * Remove committed entries from the processing list
+     * KEYS[1] = processing; ARGV = entries
+     */
+    private static final String ACK_SCRIPT =
+        "for i = 1, #ARGV do redis.call('LREM', KEYS[1], 1, ARGV[i]) end " +
+        "return #ARGV";
+
+    /**
+     * Move one entry from the processing list to the dead-letter list
+     * KEYS[1] = processing, KEYS[2] = dead letter; ARGV[1] = entry
+     */
+    private static final String DEAD_LETTER_SCRIPT =
+        "redis.call('LREM', KEYS[1], 1, ARGV[1]) " +
+        "return redis.call('LPUSH', KEYS[2], ARGV[1])";
+
+    private static final String LOCK_SCRIPT =
+        "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end " +
+        "return 0";
+
+    private static final String RENEW_SCRIPT =
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+        "return 0";
+
+    private static final String UNLOCK_SCRIPT =
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+        "return 0";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM = new DefaultRedisScript<>(CLAIM_SCRIPT, List.class);
+
+    private static final DefaultRedisScript<Long> ACK = new DefaultRedisScript<>(ACK_SCRIPT, Long.class);
+
+    private static final DefaultRedisScript<Long> DEAD_LETTER = new DefaultRedisScript<>(DEAD_LETTER_SCRIPT, Long.class);
+
+    private static final DefaultRedisScript<Long> LOCK = new DefaultRedisScript<>(LOCK_SCRIPT, Long.class);
+
+    private static final DefaultRedisScript<Long> RENEW = new DefaultRedisScript<>(RENEW_SCRIPT, Long.class);
+
+    private static final DefaultRedisScript<Long> UNLOCK = new DefaultRedisScript<>(UNLOCK_SCRIPT, Long.class);
+
+    @Value("${points.ledger.batch-size:200}")
+    private int batchSize;
+
+    @Value("${points.ledger.flush-interval-millis:200}")
+    private long flushIntervalMillis;
+
+    // 锁租约；每个事务开始前续约，事务超时取租约的一半，确保提交时锁仍归本节点
+    @Value("${points.ledger.lock-seconds:30}")
+    private long lockSeconds;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    @Autowired
+    private PointDetailMapper pointDetailMapper;
+
+    @Autowired
+    private PointRollupService pointRollupService;
+
+    @Autowired
+    private UserPointMapper userPointMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Timer flushTimer;
+
+    private DistributionSummary batchSizeSummary;
+
+    private final String lockToken = UUID.randomUUID().toString();
+
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setTimeout((int) Math.max(1, lockSeconds / 2));
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            flushTimer = Timer.builder("points.ledger.flush").tag("writer", "redis").register(registry);
+            batchSizeSummary = DistributionSummary.builder("points.ledger.batch.size").tag("writer", "redis").register(registry);
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("point-ledger-");
+        threadFactory.setDaemon(true);
+        flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        // 首次刷盘即会重放上次进程崩溃时留在 processing 列表中的条目
+        flusher.scheduleWithFixedDelay(this::flushSafely, 0, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+
+    /**
+     * Number of ledger entries waiting to be written (including an uncommitted batch)
+     */
+    public long getPendingCount() {
+        Long pending = redisUtil.lSize(LEDGER_KEY);
+        Long processing = redisUtil.lSize(PROCESSING_KEY);
+        return (pending != null ? pending : 0) + (processing != null ? processing : 0);
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Point ledger flush failed", e);
+        }
+    }
+
+    /**
+     * Drain the ledger batch by batch until it is empty (or the database is unavailable)
+     * The lock is taken per batch, so no single hold outlives its lease.
+     */
+    private void flush() {
+        while (lock()) {
+            boolean more;
+            try {
+                more = flushBatch();
+            } finally {
+                unlock();
+            }
+            if (!more) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true when a batch was committed and more entries may be waiting
+     */
+    private boolean flushBatch() {
+        List<?> entries = redisUtil.execute(CLAIM, List.of(LEDGER_KEY, PROCESSING_KEY), batchSize);
+        if (entries == null || entries.isEmpty()) {
+            return false;
+        }
+        List<String> batch = new ArrayList<>(entries.size());
+        for (Object entry : entries) {
+            batch.add(String.valueOf(entry));
+        }
+        return writeBatch(batch);
+    }
+
+    /**
+     * @return true when every entry was committed (or dead-lettered); false leaves the rest in the processing list
+     */
+    private boolean writeBatch(List<String> batch) {
+        long start = System.nanoTime();
+        try {
+            if (!renewLock()) {
+                return false;
+            }
+            transactionTemplate.executeWithoutResult(status -> write(batch));
+            redisUtil.execute(ACK, Collections.singletonList(PROCESSING_KEY), batch.toArray());
+            if (flushTimer != null) {
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSizeSummary.record(batch.size());
+            }
+            return true;
+        } catch (DataIntegrityViolationException | JSONException e) {
+            log.warn("Point ledger batch of {} rejected, writing entries one by one: {}", batch.size(), e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to write point ledger batch of {}, will retry: {}", batch.size(), e.getMessage());
+            return false;
+        }
+
+        for (String entry : batch) {
+            if (!renewLock()) {
+                return false;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(Collections.singletonList(entry)));
+                redisUtil.execute(ACK, Collections.singletonList(PROCESSING_KEY), entry);
+            } catch (DataIntegrityViolationException | JSONException e) {
+                log.error("Point ledger entry moved to {}: {} ({})", DEAD_LETTER_KEY, entry, e.getMessage());
+                redisUtil.execute(DEAD_LETTER, List.of(PROCESSING_KEY, DEAD_LETTER_KEY), entry);
+            } catch (Exception e) {
+                log.error("Failed to write point ledger entry, will retry: {}", e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean lock() {
+        Long locked = redisUtil.execute(LOCK, Collections.singletonList(LOCK_KEY), lockToken, lockMillis());
+        return locked != null && locked == 1;
+    }
+
+    private boolean renewLock() {
+        Long renewed = redisUtil.execute(RENEW, Collections.singletonList(LOCK_KEY), lockToken, lockMillis());
+        if (renewed == null || renewed != 1) {
+            log.warn("Point ledger lock lost, leaving the batch for the next writer");
+            return false;
+        }
+        return true;
+    }
+
+    private void unlock() {
+        try {
+            redisUtil.execute(UNLOCK, Collections.singletonList(LOCK_KEY), lockToken);
+        } catch (Exception e) {
+            // 租约到期后自动释放
+            log.warn("Failed to release point ledger lock: {}", e.getMessage());
+        }
+    }
+
+    private long lockMillis() {
+        return TimeUnit.SECONDS.toMillis(lockSeconds);
+    }
+
+    private void write(List<String> entries) {
+        // 同一用户在一个批次内只写回最后一次余额快照
+        Map<Long, UserPoint> balances = new LinkedHashMap<>();
+        List<PointDetail> details = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            JSONObject event = JSON.parseObject(entry);
+            PointDetail detail = JSON.parseObject(event.getString("detail"), PointDetail.class);
+            if (event.containsKey("pointsType")) {
+                detail.setPointsType(event.getInteger("pointsType"));
+            }
+            details.add(detail);
+
+            JSONArray balance = event.getJSONArray("balance");
+            balances.put(detail.getUserId(), UserPoint.builder()
+                .userId(detail.getUserId())
+                .points(balance.getInteger(0))
+                .fixedPoints(balance.getInteger(1))
+                .subPoints(balance.getInteger(2))
+                .subPointsLeft(balance.getInteger(3))
+                .freePoints(balance.getInteger(4))
+                .build());
+        }
+        // MySQL 提交后、ACK 前失败（Redis 异常、租约过期）时条目会被重新领取：跳过已写入的条目，只汇总本次插入的行
+        List<PointDetail> inserted = withoutWritten(details);
+        if (!inserted.isEmpty()) {
+            int rows = pointDetailMapper.insertLedgerBatch(inserted);
+            if (rows != inserted.size()) {
+                // 查询之后又被别的写入方写入（锁已丢失），回滚整批，下次刷盘重新过滤
+                throw new IllegalStateException("Point ledger entries written concurrently: inserted " + rows
+                    + " of " + inserted.size());
+            }
+            pointRollupService.apply(inserted);
+        }
+        for (UserPoint up : balances.values()) {
+            userPointMapper.updateBalances(up);
+        }
+    }
+
+    /**
+     * Drop details whose ledger entry is already in tb_point_detail (entries written before this change have no id)
+     */
+    private List<PointDetail> withoutWritten(List<PointDetail> details) {
+        Set<String> ledgerIds = new HashSet<>();
+        for (PointDetail detail : details) {
+            if (detail.getLedgerId() != null) {
+                ledgerIds.add(detail.getLedgerId());
+            }
+        }
+        if (ledgerIds.isEmpty()) {
+            return details;
+        }
+        Set<String> written = new HashSet<>(pointDetailMapper.selectLedgerIds(ledgerIds));
+        if (written.isEmpty()) {
+            return details;
+        }
+        log.info("Skipping {} point ledger entries already written", written.size());
+        List<PointDetail> remaining = new ArrayList<>(details.size() - written.size());
+        for (PointDetail detail : details) {
+            if (detail.getLedgerId() == null || !written.contains(detail.getLedgerId())) {
+                remaining.add(detail);
+            }
+        }
+        return remaining;
+    }
+}
@@ -0,0 +1,121 @@
+package com.novelhub.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.novelhub.entity.PointDailyRollup;
+import com.novelhub.entity.PointDetail;
+import com.novelhub.mapper.PointDailyRollupMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Point Rollup Service
+ * Maintains tb_point_daily_rollup (user / day / type / funcType / pointsType totals) from the ledger writers,
+ * inside the same transaction as the tb_point_detail insert, and answers summaries from it in O(days).
+ */
+@Slf4j
+@Service
+public class PointRollupService {
+
+    private static final int TYPE_CONSUME = 0;
+
+    @Autowired
+    private PointDailyRollupMapper pointDailyRollupMapper;
+
+    /**
+     * Add a batch of ledger rows to the daily rollups (call inside the ledger transaction)
+     * @param details Ledger rows just inserted
+     */
+    public void apply(List<PointDetail> details) {
+        Map<String, PointDailyRollup> rollups = new HashMap<>();
+        for (PointDetail detail : details) {
+            LocalDate statDate = detail.getCreatedAt() != null ? detail.getCreatedAt().toLocalDate() : LocalDate.now();
+            int type = detail.getType() != null ? detail.getType() : 0;
+            int funcType = detail.getFuncType() != null ? detail.getFuncType() : 0;
+            int pointsType = detail.getPointsType() != null ? detail.getPointsType() : 1;
+            String key = detail.getUserId() + ":" + statDate + ":" + type + ":" + funcType + ":" + pointsType;
+
+            PointDailyRollup rollup = rollups.computeIfAbsent(key, k -> PointDailyRollup.builder()
+                .userId(detail.getUserId()).statDate(statDate).type(type).funcType(funcType).pointsType(pointsType)
+                .totalPoints(0L).txCount(0)
+                .build());
+            rollup.setTotalPoints(rollup.getTotalPoints() + (detail.getPoints() != null ? detail.getPoints() : 0));
+            rollup.setTxCount(rollup.getTxCount() + 1);
+        }
+        if (rollups.isEmpty()) {
+            return;
+        }
+
+        // 固定加锁顺序，避免并发批次互相死锁
+        List<PointDailyRollup> sorted = new ArrayList<>(rollups.values());
+        sorted.sort(Comparator.comparing(PointDailyRollup::getUserId)
+            .thenComparing(PointDailyRollup::getStatDate)
+            .thenComparing(PointDailyRollup::getType)
+            .thenComparing(PointDailyRollup::getFuncType)
+            .thenComparing(PointDailyRollup::getPointsType));
+        pointDailyRollupMapper.upsertBatch(sorted);
+    }
+
+    /**
+     * Points summary for the last N days (including today)
+     * @param userId User ID
+     * @param days Number of days
+     * @return Map with totals, consumed per funcType, earned/consumed per pointsType and the daily breakdown
+     */
+    public Map<String, Object> getSummary(Long userId, int days) {
+        LocalDate from = LocalDate.now().minusDays(days - 1L);
+        List<PointDailyRollup> rows = pointDailyRollupMapper.selectList(new LambdaQueryWrapper<PointDailyRollup>()
+            .eq(PointDailyRollup::getUserId, userId)
+            .ge(PointDailyRollup::getStatDate, from)
+            .orderByAsc(PointDailyRollup::getStatDate));
+
+        long totalEarned = 0;
+        long totalConsumed = 0;
+        Map<Integer, Long> consumedByFuncType = new TreeMap<>();
+        Map<Integer, Long> consumedByPointsType = new TreeMap<>();
+        Map<Integer, Long> earnedByPointsType = new TreeMap<>();
+        Map<LocalDate, Map<String, Object>> daily = new LinkedHashMap<>();
+        for (PointDailyRollup row : rows) {
+            long points = row.getTotalPoints();
+            Map<String, Object> day = daily.computeIfAbsent(row.getStatDate(), date -> {
+                Map<String, Object> d = new LinkedHashMap<>();
+                d.put("date", date.toString());
+                d.put("earned", 0L);
+                d.put("consumed", 0L);
+                d.put("count", 0);
+                return d;
+            });
+            day.put("count", (Integer) day.get("count") + row.getTxCount());
+            if (row.getType() == TYPE_CONSUME) {
+                totalConsumed += points;
+                consumedByFuncType.merge(row.getFuncType(), points, Long::sum);
+                consumedByPointsType.merge(row.getPointsType(), points, Long::sum);
+                day.put("consumed", (Long) day.get("consumed") + points);
+            } else {
+                totalEarned += points;
+                earnedByPointsType.merge(row.getPointsType(), points, Long::sum);
+                day.put("earned", (Long) day.get("earned") + points);
+            }
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("from", from.toString());
+        summary.put("to", LocalDate.now().toString());
+        summary.put("totalEarned", totalEarned);
+        summary.put("totalConsumed", totalConsumed);
+        summary.put("consumedByFuncType", consumedByFuncType);
+        summary.put("consumedByPointsType", consumedByPointsType);
+        summary.put("earnedByPointsType", earnedByPointsType);
+        summary.put("daily", new ArrayList<>(daily.values()));
+        return summary;
+    }
+}
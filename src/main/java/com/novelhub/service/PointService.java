@@ -7,14 +7,20 @@ import com.novelhub.entity.PointDetail;
 import com.novelhub.entity.UserPoint;
 import com.novelhub.mapper.UserPointMapper;
 import com.novelhub.mapper.PointDetailMapper;
+import com.novelhub.vo.response.CursorPageDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -27,6 +33,16 @@ public class PointService {
     @Autowired
     private PointDetailMapper pointDetailMapper;
 
+    @Autowired
+    private PointBalanceStore pointBalanceStore;
+
+    @Autowired
+    private PointLedgerAppender pointLedgerAppender;
+
+    // 余额以 Redis 为准（原子 Lua 扣减），积分明细异步批量写入；关闭时直接读写 MySQL
+    @Value("${points.balance.enabled:true}")
+    private boolean balanceStoreEnabled;
+
     @Value("${points.daily-claim-amount:100}")
     private int dailyClaimAmount;
 
@@ -34,7 +50,24 @@ public class PointService {
     private int maxFreePoints;
 
     public UserPoint getUserPoints(Long userId) {
-        return userPointMapper.selectOne(new LambdaQueryWrapper<UserPoint>().eq(UserPoint::getUserId, userId));
+        UserPoint up = userPointMapper.selectOne(new LambdaQueryWrapper<UserPoint>().eq(UserPoint::getUserId, userId));
+        if (up == null || !balanceStoreEnabled) {
+            return up;
+        }
+        // tb_user_points 的余额列由账本异步追平，优先返回 Redis 中的实时余额
+        try {
+            UserPoint balance = pointBalanceStore.getBalance(userId);
+            if (balance != null) {
+                up.setPoints(balance.getPoints());
+                up.setFixedPoints(balance.getFixedPoints());
+                up.setSubPoints(balance.getSubPoints());
+                up.setSubPointsLeft(balance.getSubPointsLeft());
+                up.setFreePoints(balance.getFreePoints());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read point balance from Redis for user {}: {}", userId, e.getMessage());
+        }
+        return up;
     }
 
     public UserPoint initUserPoints(Long userId) {
@@ -48,28 +81,37 @@ public class PointService {
         return up;
     }
 
-    @Transactional
+    /**
+     * Claim today's free points
+     * The claim is recorded first with a conditional UPDATE, so of two concurrent claims only one credits;
+     * if the credit then fails the claim is reverted and the user can try again.
+     */
     public Map<String,Object> claimDailyPoints(Long userId) {
         Map<String,Object> res = new HashMap<>();
         res.put("success", false);
-        UserPoint up = userPointMapper.selectOne(new LambdaQueryWrapper<UserPoint>().eq(UserPoint::getUserId, userId));
-        if (up == null) up = initUserPoints(userId);
+        UserPoint up = getUserPoints(userId);
+        if (up == null) up = loadUserPoints(userId);
         LocalDateTime today0 = LocalDateTime.now().withHour(0).withMinute(0).withSecond(0).withNano(0);
-        if (up.getClaimedAt() != null && up.getClaimedAt().isAfter(today0)) {
+        if (up.getClaimedAt() != null && !up.getClaimedAt().isBefore(today0)) {
             res.put("message", "今日已领取");
             return res;
         }
         int can = Math.min(dailyClaimAmount, Math.max(0, maxFreePoints - up.getFreePoints()));
         if (can <= 0) { res.put("message", "已达上限"); return res; }
-        up.setFreePoints(up.getFreePoints() + can);
-        up.setClaimedDays(up.getClaimedDays() + 1);
-        up.setClaimedAt(LocalDateTime.now());
-        userPointMapper.updateById(up);
-        PointDetail detail = PointDetail.builder()
-                .userId(userId).points(can).type(1).funcType(0).pointsType(0)
-                .taskId("daily_claim").isApi(0).extraData("每日免费积分")
-                .build();
-        pointDetailMapper.insert(detail);
+
+        // DATETIME 列为秒精度，回滚时按该值定位本次领取
+        LocalDateTime claimedAt = LocalDateTime.now().withNano(0);
+        if (userPointMapper.claimDaily(userId, today0, claimedAt) != 1) {
+            res.put("message", "今日已领取");
+            return res;
+        }
+        try {
+            creditPoints(userId, UserPoint.builder().freePoints(can).build(),
+                    buildDetail(userId, can, 1, 0, 0, "daily_claim", "每日免费积分"), null);
+        } catch (RuntimeException e) {
+            userPointMapper.revertDailyClaim(userId, claimedAt, up.getClaimedAt());
+            throw e;
+        }
         res.put("success", true);
         res.put("points", can);
         return res;
@@ -99,74 +141,148 @@ public class PointService {
         return pointDetailMapper.selectPage(page, qw);
     }
 
-    @Transactional
+    /**
+     * Points history with keyset pagination on (user_id, created_at, point_detail_id), served by idx_user_created
+     * (InnoDB secondary indexes carry the primary key, so the tie-breaker needs no extra index).
+     * @param userId User ID
+     * @param cursor Cursor from the previous page (null for the first page)
+     * @param pageSize Page size
+     * @param type Optional type filter
+     * @param pointsType Optional pointsType filter
+     * @param includeTotal Whether to run COUNT(*) as well (expensive for heavy users)
+     * @return Page with the cursor of the next page
+     * @throws IllegalArgumentException when the cursor is malformed
+     */
+    public CursorPageDTO<PointDetail> getUserPointDetailsByCursor(Long userId, String cursor, int pageSize,
+                                                                  Integer type, Integer pointsType, boolean includeTotal) {
+        CursorPageDTO<PointDetail> page = new CursorPageDTO<>();
+        if (includeTotal) {
+            page.setTotal(pointDetailMapper.selectCount(pointDetailFilter(userId, type, pointsType)));
+        }
+
+        LambdaQueryWrapper<PointDetail> qw = pointDetailFilter(userId, type, pointsType);
+        if (cursor != null && !cursor.isEmpty()) {
+            HistoryCursor position = decodeCursor(cursor);
+            // created_at <= ? 构成索引范围扫描，再排除同一时间点上已返回的记录
+            qw.le(PointDetail::getCreatedAt, position.createdAt())
+                    .and(w -> w.lt(PointDetail::getCreatedAt, position.createdAt())
+                            .or().lt(PointDetail::getPointDetailId, position.pointDetailId()));
+        }
+        qw.orderByDesc(PointDetail::getCreatedAt)
+                .orderByDesc(PointDetail::getPointDetailId)
+                .last("LIMIT " + (pageSize + 1));
+
+        List<PointDetail> records = pointDetailMapper.selectList(qw);
+        boolean hasNext = records.size() > pageSize;
+        if (hasNext) {
+            records = new ArrayList<>(records.subList(0, pageSize));
+            PointDetail last = records.get(records.size() - 1);
+            page.setNextCursor(encodeCursor(last.getCreatedAt(), last.getPointDetailId()));
+        }
+        page.setRecords(records);
+        page.setHasNext(hasNext);
+        return page;
+    }
+
+    private String encodeCursor(LocalDateTime createdAt, Long pointDetailId) {
+        String position = createdAt + "|" + pointDetailId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private HistoryCursor decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            return new HistoryCursor(LocalDateTime.parse(position.substring(0, separator)),
+                    Long.parseLong(position.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private LambdaQueryWrapper<PointDetail> pointDetailFilter(Long userId, Integer type, Integer pointsType) {
+        return new LambdaQueryWrapper<PointDetail>()
+                .eq(PointDetail::getUserId, userId)
+                .eq(type != null, PointDetail::getType, type)
+                .eq(pointsType != null, PointDetail::getPointsType, pointsType);
+    }
+
+    private record HistoryCursor(LocalDateTime createdAt, Long pointDetailId) {
+    }
+
+    /**
+     * Consume points with priority free > sub > fixed
+     * With the Redis balance store the debit is a single atomic Lua call; the ledger row and the
+     * tb_user_points update are written asynchronously by {@link PointLedgerWriter}. The request is acknowledged
+     * once Redis has the debit, so its durability is Redis persistence (AOF) until the writer catches up;
+     * with points.balance.enabled=false the debit is acknowledged only after its MySQL group commit.
+     */
     public Map<String, Object> consumePoints(Long userId, Integer points, Integer funcType, String taskId, String extraData) {
         Map<String, Object> result = new HashMap<>();
         result.put("success", false);
-        
+        if (points == null || points < 0) {
+            result.put("message", "Invalid points");
+            return result;
+        }
+        if (!balanceStoreEnabled) {
+            return consumePointsInDatabase(userId, points, funcType, taskId, extraData);
+        }
+
         try {
-            UserPoint up = userPointMapper.selectOne(new LambdaQueryWrapper<UserPoint>().eq(UserPoint::getUserId, userId));
-            if (up == null) {
-                up = initUserPoints(userId);
-            }
-            
-            // Check if user has enough points
-            int totalAvailable = up.getFreePoints() + up.getSubPointsLeft() + up.getPoints();
-            if (totalAvailable < points) {
+            PointDetail detail = buildDetail(userId, points, 0, funcType, null, taskId, extraData);
+            long[] debit = pointBalanceStore.debit(userId, points, detail, this::loadUserPoints);
+            if (debit[0] != 1) {
                 result.put("message", "Insufficient points");
                 return result;
             }
-            
-            // Consume points with priority: free > sub > fixed
-            int remainingPoints = points;
-            int pointsType = 0; // Track which type was consumed
-            
-            // First consume free points
-            if (remainingPoints > 0 && up.getFreePoints() > 0) {
-                int freeToConsume = Math.min(remainingPoints, up.getFreePoints());
-                up.setFreePoints(up.getFreePoints() - freeToConsume);
-                remainingPoints -= freeToConsume;
-                pointsType = 0; // Free points
-            }
-            
-            // Then consume subscription points
-            if (remainingPoints > 0 && up.getSubPointsLeft() > 0) {
-                int subToConsume = Math.min(remainingPoints, up.getSubPointsLeft());
-                up.setSubPointsLeft(up.getSubPointsLeft() - subToConsume);
-                remainingPoints -= subToConsume;
-                pointsType = 2; // Subscription points
-            }
-            
-            // Finally consume fixed points
-            if (remainingPoints > 0 && up.getPoints() > 0) {
-                int fixedToConsume = Math.min(remainingPoints, up.getPoints());
-                up.setPoints(up.getPoints() - fixedToConsume);
-                remainingPoints -= fixedToConsume;
-                pointsType = 1; // Fixed points
+
+            result.put("success", true);
+            result.put("pointsConsumed", points);
+            result.put("pointsType", (int) debit[1]);
+            result.put("remainingPoints", (int) debit[2]);
+        } catch (Exception e) {
+            log.error("Failed to consume points for user: {}", userId, e);
+            result.put("message", "Failed to consume points");
+        }
+        return result;
+    }
+
+    /**
+     * MySQL debit: one conditional UPDATE computes the free > sub > fixed split itself (LEAST/GREATEST) and
+     * is guarded by the total balance, so it never needs a re-plan, retry or locking read.
+     * MySQL has no UPDATE ... RETURNING, so the same statement stores the consumed points type and the remaining
+     * total (computed from the pre-image) in LAST_INSERT_ID, read back on the group transaction's connection.
+     * 扣减与积分明细通过 {@link PointLedgerAppender} 分组提交（同组按用户排序加锁，不会互相死锁）
+     */
+    private Map<String, Object> consumePointsInDatabase(Long userId, Integer points, Integer funcType, String taskId, String extraData) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        
+        try {
+            // 确保积分记录存在（在分组事务之外创建，避免唯一键冲突影响整组）
+            loadUserPoints(userId);
+
+            PointDetail detail = buildDetail(userId, points, 0, funcType, null, taskId, extraData);
+            int[] remaining = new int[1];
+            boolean debited = pointLedgerAppender.append(detail, () -> {
+                if (userPointMapper.debit(userId, points) != 1) {
+                    return false;
+                }
+                // 扣减后总余额 * 4 + 积分类型（未命中时 LAST_INSERT_ID 是旧值，所以只在命中后读取）
+                long debitResult = userPointMapper.selectDebitResult();
+                detail.setPointsType((int) (debitResult % 4));
+                remaining[0] = (int) (debitResult / 4);
+                return true;
+            });
+            if (!debited) {
+                result.put("message", "Insufficient points");
+                return result;
             }
-            
-            // Update user points
-            userPointMapper.updateById(up);
-            
-            // Create point detail record
-            PointDetail detail = PointDetail.builder()
-                    .userId(userId)
-                    .points(points)
-                    .type(0) // 0 = consume points
-                    .funcType(funcType)
-                    .pointsType(pointsType)
-                    .taskId(taskId)
-                    .isApi(0)
-                    .extraData(extraData)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-            pointDetailMapper.insert(detail);
-            
+
             result.put("success", true);
             result.put("pointsConsumed", points);
-            result.put("pointsType", pointsType);
-            result.put("remainingPoints", up.getPoints() + up.getSubPointsLeft() + up.getFreePoints());
-            
+            result.put("pointsType", detail.getPointsType());
+            result.put("remainingPoints", remaining[0]);
         } catch (Exception e) {
             log.error("Failed to consume points for user: {}", userId, e);
             result.put("message", "Failed to consume points");
@@ -175,46 +291,27 @@ public class PointService {
         return result;
     }
 
-    @Transactional
     public boolean refundPoints(Long userId, Integer points, Integer pointsType, String reason) {
+        // Add points back based on type
+        UserPoint delta = UserPoint.builder().build();
+        switch (pointsType) {
+            case 0: // FreePoints
+                delta.setFreePoints(points);
+                break;
+            case 1: // FixedPoints
+                delta.setPoints(points);
+                break;
+            case 2: // SubPoints
+                delta.setSubPointsLeft(points);
+                break;
+            default:
+                delta.setPoints(points);
+                break;
+        }
+        // funcType 0 = refund
+        PointDetail detail = buildDetail(userId, points, 1, 0, pointsType, "refund_" + System.currentTimeMillis(), reason);
         try {
-            UserPoint up = userPointMapper.selectOne(new LambdaQueryWrapper<UserPoint>().eq(UserPoint::getUserId, userId));
-            if (up == null) {
-                up = initUserPoints(userId);
-            }
-            
-            // Add points back based on type
-            switch (pointsType) {
-                case 0: // FreePoints
-                    up.setFreePoints(up.getFreePoints() + points);
-                    break;
-                case 1: // FixedPoints
-                    up.setPoints(up.getPoints() + points);
-                    break;
-                case 2: // SubPoints
-                    up.setSubPointsLeft(up.getSubPointsLeft() + points);
-                    break;
-                default:
-                    up.setPoints(up.getPoints() + points);
-                    break;
-            }
-            
-            userPointMapper.updateById(up);
-            
-            // Create point detail record
-            PointDetail detail = PointDetail.builder()
-                    .userId(userId)
-                    .points(points)
-                    .type(1) // 1 = add points
-                    .funcType(0) // 0 = refund
-                    .pointsType(pointsType)
-                    .taskId("refund_" + System.currentTimeMillis())
-                    .isApi(0)
-                    .extraData(reason)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-            pointDetailMapper.insert(detail);
-            
+            creditPoints(userId, delta, detail, null);
             return true;
         } catch (Exception e) {
             log.error("Failed to refund points for user: {}", userId, e);
@@ -222,51 +319,101 @@ public class PointService {
         }
     }
 
-    @Transactional
     public boolean addPoints(Long userId, int points, int pointsType, String description, String orderNumber) {
+        // Update user points based on type
+        UserPoint delta = UserPoint.builder().points(points).build();
+        switch (pointsType) {
+            case 0: // FreePoints
+                delta.setFreePoints(points);
+                break;
+            case 1: // FixedPoints
+                delta.setFixedPoints(points);
+                break;
+            case 2: // SubPoints
+                delta.setSubPoints(points);
+                delta.setSubPointsLeft(points);
+                break;
+            default:
+                delta.setFreePoints(points);
+                break;
+        }
+        // funcType 0 = payment
+        PointDetail detail = buildDetail(userId, points, 1, 0, pointsType, orderNumber, description);
         try {
-            UserPoint up = userPointMapper.selectOne(new LambdaQueryWrapper<UserPoint>().eq(UserPoint::getUserId, userId));
-            if (up == null) up = initUserPoints(userId);
-
-            // Update user points based on type
-            switch (pointsType) {
-                case 0: // FreePoints
-                    up.setFreePoints(up.getFreePoints() + points);
-                    break;
-                case 1: // FixedPoints
-                    up.setFixedPoints(up.getFixedPoints() + points);
-                    break;
-                case 2: // SubPoints
-                    up.setSubPoints(up.getSubPoints() + points);
-                    up.setSubPointsLeft(up.getSubPointsLeft() + points);
-                    break;
-                default:
-                    up.setFreePoints(up.getFreePoints() + points);
-                    break;
+            // 支付回调在自身事务中调用：按订单号只入账一次，事务回滚后重投的回调不会重复加分
+            if (!creditPoints(userId, delta, detail, StringUtils.hasText(orderNumber) ? orderNumber : null)) {
+                log.warn("Points for {} already credited to user {}, skipping", orderNumber, userId);
             }
-            up.setPoints(up.getPoints() + points);
-            userPointMapper.updateById(up);
-
-            // Add point detail record
-            PointDetail detail = PointDetail.builder()
-                    .userId(userId)
-                    .points(points)
-                    .type(1) // 1 = add points
-                    .funcType(0) // 0 = payment
-                    .pointsType(pointsType)
-                    .taskId(orderNumber)
-                    .isApi(0)
-                    .extraData(description)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-            pointDetailMapper.insert(detail);
-
             return true;
         } catch (Exception e) {
             log.error("Failed to add points for user: {}", userId, e);
             return false;
         }
     }
-}
 
+    /**
+     * Apply balance deltas and write the ledger row (Redis store, or a group-committed MySQL increment when disabled)
+     * @param idempotencyKey Credit at most once per user and key (matched against task_id), or null
+     * @return false when a credit with the same key was already applied
+     */
+    private boolean creditPoints(Long userId, UserPoint delta, PointDetail detail, String idempotencyKey) {
+        if (balanceStoreEnabled) {
+            return pointBalanceStore.credit(userId, delta, detail, idempotencyKey, this::loadUserPoints)[0] == 1;
+        }
+        UserPoint increments = UserPoint.builder()
+                .points(valueOf(delta.getPoints()))
+                .fixedPoints(valueOf(delta.getFixedPoints()))
+                .subPoints(valueOf(delta.getSubPoints()))
+                .subPointsLeft(valueOf(delta.getSubPointsLeft()))
+                .freePoints(valueOf(delta.getFreePoints()))
+                .build();
+        return pointLedgerAppender.append(detail, () -> {
+            if (idempotencyKey != null && pointDetailMapper.selectCount(new LambdaQueryWrapper<PointDetail>()
+                    .eq(PointDetail::getUserId, userId)
+                    .eq(PointDetail::getTaskId, idempotencyKey)
+                    .eq(PointDetail::getType, 1)) > 0) {
+                return false;
+            }
+            if (userPointMapper.addBalances(userId, increments) == 0) {
+                // 首次入账：先创建积分记录
+                loadUserPoints(userId);
+                userPointMapper.addBalances(userId, increments);
+            }
+            return true;
+        });
+    }
 
+    /**
+     * Load the MySQL row, creating it on first use (concurrent creators fall back to the row that won)
+     */
+    private UserPoint loadUserPoints(Long userId) {
+        UserPoint up = userPointMapper.selectOne(new LambdaQueryWrapper<UserPoint>().eq(UserPoint::getUserId, userId));
+        if (up != null) {
+            return up;
+        }
+        try {
+            return initUserPoints(userId);
+        } catch (DuplicateKeyException e) {
+            return userPointMapper.selectOne(new LambdaQueryWrapper<UserPoint>().eq(UserPoint::getUserId, userId));
+        }
+    }
+
+    private PointDetail buildDetail(Long userId, Integer points, int type, Integer funcType, Integer pointsType,
+                                    String taskId, String extraData) {
+        return PointDetail.builder()
+                .userId(userId)
+                .points(points)
+                .type(type) // 0 = consume points, 1 = add points
+                .funcType(funcType)
+                .pointsType(pointsType)
+                .taskId(taskId != null ? taskId : "")
+                .isApi(0)
+                .extraData(extraData != null ? extraData : "")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,170 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prediction Event Hub
+ * Pushes prediction progress (starting/processing/succeeded/failed/canceled) to clients over Server-Sent Events.
+ * Status changes arrive through Redis pub/sub, so a webhook handled by any node reaches subscribers on every node.
+ * 每个 prediction 只保留本节点上的订阅列表，终态推送后关闭连接
+ */
+@Slf4j
+@Service
+public class PredictionEventHub implements MessageListener {
+
+    // SSE 连接超时，应大于 replicate.api.timeout
+    @Value("${replicate.events.emitter-timeout:330000}")
+    private long emitterTimeoutMs;
+
+    // 心跳间隔，防止代理断开空闲连接；同时补发可能丢失的终态事件
+    @Value("${replicate.events.heartbeat-interval:15000}")
+    private long heartbeatIntervalMs;
+
+    @Autowired
+    private PredictionStateStore stateStore;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService heartbeat;
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(PredictionStateStore.EVENTS_CHANNEL));
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("prediction-sse-");
+        threadFactory.setDaemon(true);
+        heartbeat = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        heartbeat.scheduleWithFixedDelay(this::sendHeartbeats, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        subscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        subscribers.clear();
+    }
+
+    /**
+     * Subscribe to progress events of a prediction
+     * The current state (if known) is sent immediately; the stream is closed after the final state.
+     * @param predictionId Prediction ID
+     * @return SSE emitter
+     */
+    public SseEmitter subscribe(String predictionId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        List<SseEmitter> emitters = subscribers.computeIfAbsent(predictionId, id -> new CopyOnWriteArrayList<>());
+        emitters.add(emitter);
+
+        emitter.onCompletion(() -> remove(predictionId, emitter));
+        emitter.onTimeout(() -> remove(predictionId, emitter));
+        emitter.onError(e -> remove(predictionId, emitter));
+
+        Map<String, Object> state = stateStore.get(predictionId);
+        if (state != null) {
+            send(predictionId, emitter, state);
+        }
+        return emitter;
+    }
+
+    /**
+     * Number of open SSE subscriptions on this node
+     */
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(List::size).sum();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JSONObject state = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+            String predictionId = state.getString("predictionId");
+            if (predictionId != null && subscribers.containsKey(predictionId)) {
+                publishLocal(predictionId, state);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to handle prediction event: {}", e.getMessage());
+        }
+    }
+
+    private void publishLocal(String predictionId, Map<String, Object> state) {
+        List<SseEmitter> emitters = subscribers.get(predictionId);
+        if (emitters == null) {
+            return;
+        }
+        for (SseEmitter emitter : emitters) {
+            send(predictionId, emitter, state);
+        }
+    }
+
+    private void send(String predictionId, SseEmitter emitter, Map<String, Object> state) {
+        String status = (String) state.get("status");
+        try {
+            emitter.send(SseEmitter.event()
+                .name(status)
+                .data(state, MediaType.APPLICATION_JSON));
+            if (ReplicateService.isTerminal(status)) {
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            // 客户端已断开
+            log.debug("SSE send failed for prediction {}: {}", predictionId, e.getMessage());
+            remove(predictionId, emitter);
+        }
+    }
+
+    private void sendHeartbeats() {
+        try {
+            for (Map.Entry<String, List<SseEmitter>> entry : subscribers.entrySet()) {
+                String predictionId = entry.getKey();
+                Map<String, Object> state = stateStore.get(predictionId);
+                if (state != null && ReplicateService.isTerminal((String) state.get("status"))) {
+                    // pub/sub 消息丢失时补发终态
+                    publishLocal(predictionId, state);
+                    continue;
+                }
+                for (SseEmitter emitter : entry.getValue()) {
+                    try {
+                        emitter.send(SseEmitter.event().comment("ping"));
+                    } catch (Exception e) {
+                        remove(predictionId, emitter);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("SSE heartbeat failed", e);
+        }
+    }
+
+    private void remove(String predictionId, SseEmitter emitter) {
+        subscribers.computeIfPresent(predictionId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
@@ -0,0 +1,198 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.novelhub.utils.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prediction State Store
+ * Latest known state of each Replicate prediction, written by webhooks and the poller.
+ * Redis hash (replicate:prediction:{id}) is shared by all nodes; a Caffeine near-cache sits in front of it.
+ * 终态 (succeeded/failed/canceled) 不会再变化，可在本地长时间缓存；非终态只缓存很短时间
+ */
+@Slf4j
+@Service
+public class PredictionStateStore {
+
+    private static final String KEY_PREFIX = "replicate:prediction:";
+
+    /**
+     * Pub/sub channel carrying every status change (consumed by PredictionEventHub on all nodes)
+     */
+    public static final String EVENTS_CHANNEL = "replicate:prediction:events";
+
+    /**
+     * Replace the state unless the stored one is already final, in one round-trip
+     * Hash values are JSON-encoded (same format as the template's hash serializer), so statuses are compared quoted.
+     * KEYS[1] = state key, ARGV[1] = ttl seconds, ARGV[2..] = field/value pairs
+     * Returns {applied (1/0), previous status or ''}
+     */
+    private static final String SAVE_SCRIPT =
+        "local cur = redis.call('HGET', KEYS[1], 'status') " +
+        "if cur == '\"succeeded\"' or cur == '\"failed\"' or cur == '\"canceled\"' then " +
+        "  return {0, cur} " +
+        "end " +
+        "redis.call('DEL', KEYS[1]) " +
+        "for i = 2, #ARGV, 2 do " +
+        "  redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) " +
+        "end " +
+        "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[1])) " +
+        "return {1, cur or ''}";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> SAVE = new DefaultRedisScript<>(SAVE_SCRIPT, List.class);
+
+    @Value("${replicate.state.ttl-seconds:86400}")
+    private long ttlSeconds;
+
+    @Value("${replicate.state.near-cache-size:10000}")
+    private long nearCacheSize;
+
+    // 非终态在本地缓存的时间，应不大于轮询间隔
+    @Value("${replicate.state.pending-cache-millis:1000}")
+    private long pendingCacheMillis;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    private Cache<String, Map<String, Object>> nearCache;
+
+    @PostConstruct
+    public void init() {
+        nearCache = Caffeine.newBuilder()
+            .maximumSize(nearCacheSize)
+            .expireAfter(new Expiry<String, Map<String, Object>>() {
+                @Override
+                public long expireAfterCreate(String key, Map<String, Object> value, long currentTime) {
+                    return ReplicateService.isTerminal((String) value.get("status"))
+                        ? TimeUnit.SECONDS.toNanos(ttlSeconds)
+                        : TimeUnit.MILLISECONDS.toNanos(pendingCacheMillis);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Map<String, Object> value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Map<String, Object> value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    }
+
+    /**
+     * Record the latest state of a prediction
+     * A final state is never overwritten (Replicate does not guarantee webhook ordering); the check and the write
+     * run atomically in Redis, so concurrent webhooks and pollers on different nodes cannot race past it.
+     * @param predictionId Prediction ID
+     * @param status Replicate status
+     * @param imageUrl Output image URL (succeeded only)
+     * @param error Error message (failed/canceled only)
+     * @return Stored state
+     */
+    public Map<String, Object> save(String predictionId, String status, String imageUrl, String error) {
+        if (predictionId == null || status == null) {
+            return null;
+        }
+
+        Map<String, Object> state = new HashMap<>();
+        state.put("predictionId", predictionId);
+        state.put("status", status);
+        if (imageUrl != null) {
+            state.put("imageUrl", imageUrl);
+        }
+        if (error != null) {
+            state.put("error", error);
+        }
+        state.put("updatedAt", System.currentTimeMillis());
+        state = Collections.unmodifiableMap(state);
+
+        String key = KEY_PREFIX + predictionId;
+        String previousStatus;
+        try {
+            List<Object> args = new ArrayList<>(1 + state.size() * 2);
+            args.add(ttlSeconds);
+            state.forEach((field, value) -> {
+                args.add(field);
+                args.add(JSON.toJSONString(value));
+            });
+            @SuppressWarnings("rawtypes")
+            List result = redisUtil.execute(SAVE, Collections.singletonList(key), args.toArray());
+            previousStatus = decodeStatus(result.get(1));
+            if (((Number) result.get(0)).longValue() == 0) {
+                log.debug("Ignoring status {} for finished prediction {} ({})", status, predictionId, previousStatus);
+                nearCache.invalidate(predictionId);
+                return get(predictionId);
+            }
+        } catch (Exception e) {
+            // Redis 不可用时仍保留本地状态，客户端轮询会回退到 Replicate
+            log.warn("Failed to store prediction state for {}: {}", predictionId, e.getMessage());
+            Map<String, Object> current = nearCache.getIfPresent(predictionId);
+            previousStatus = current != null ? (String) current.get("status") : null;
+            if (ReplicateService.isTerminal(previousStatus)) {
+                return current;
+            }
+        }
+        nearCache.put(predictionId, state);
+
+        // 仅在状态变化时广播，轮询刷新 updatedAt 不产生事件
+        if (!status.equals(previousStatus)) {
+            try {
+                redisUtil.publish(EVENTS_CHANNEL, state);
+            } catch (Exception e) {
+                log.warn("Failed to publish prediction event for {}: {}", predictionId, e.getMessage());
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Get the latest known state of a prediction
+     * @param predictionId Prediction ID
+     * @return State map (predictionId, status, imageUrl, error, updatedAt) or null if unknown
+     */
+    public Map<String, Object> get(String predictionId) {
+        Map<String, Object> state = nearCache.getIfPresent(predictionId);
+        if (state != null) {
+            return state;
+        }
+
+        Map<Object, Object> hash = redisUtil.hGetAll(KEY_PREFIX + predictionId);
+        if (hash == null || hash.isEmpty() || hash.get("status") == null) {
+            return null;
+        }
+
+        Map<String, Object> loaded = new HashMap<>();
+        hash.forEach((k, v) -> loaded.put(String.valueOf(k), v));
+        if (loaded.get("updatedAt") instanceof Number) {
+            loaded.put("updatedAt", ((Number) loaded.get("updatedAt")).longValue());
+        }
+        state = Collections.unmodifiableMap(loaded);
+        nearCache.put(predictionId, state);
+        return state;
+    }
+
+    private static String decodeStatus(Object encoded) {
+        if (encoded == null || "".equals(encoded)) {
+            return null;
+        }
+        return JSON.parseObject(String.valueOf(encoded), String.class);
+    }
+}
@@ -1,7 +1,9 @@
 package com.novelhub.service;
 
 import com.alibaba.fastjson2.JSONObject;
+import com.novelhub.utils.IntegrationGuard;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -10,6 +12,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 价格服务 - 从 CoinGecko API 获取实时代币价格
@@ -24,13 +27,24 @@ public class PriceService {
     @Value("${coingecko.price-cache-ttl:300}")
     private int priceCacheTtl;
     
+    // CoinGecko 不可用时允许使用的最近一次价格的最大年龄（秒）
+    @Value("${coingecko.stale-price-max-age:900}")
+    private int stalePriceMaxAge;
+    
     private final RestTemplate restTemplate;
     
+    private final IntegrationGuard integrationGuard;
+    
     // 简单的内存缓存
     private final Map<String, PriceCache> priceCache = new HashMap<>();
     
-    public PriceService(RestTemplate restTemplate) {
+    // 最近一次成功获取的价格（熔断/超时时的降级数据）
+    private final Map<String, LastKnownPrice> lastKnownPrices = new ConcurrentHashMap<>();
+    
+    public PriceService(@Qualifier("coingeckoRestTemplate") RestTemplate restTemplate,
+                        IntegrationGuard integrationGuard) {
         this.restTemplate = restTemplate;
+        this.integrationGuard = integrationGuard;
     }
     
     /**
@@ -85,15 +99,31 @@ public class PriceService {
             String coinId = getCoinGeckoId(currency);
             String url = coingeckoApiUrl + "/simple/price?ids=" + coinId + "&vs_currencies=usd";
             
-            String response = restTemplate.getForObject(url, String.class);
+            String response = integrationGuard.execute("coingecko", () -> restTemplate.getForObject(url, String.class));
             log.info("=====restTemplate response: {}", response);
             JSONObject from = JSONObject.from(response);
 
-            return from.getJSONObject(coinId).getString("usd");
+            String price = from.getJSONObject(coinId).getString("usd");
+            if (price != null) {
+                lastKnownPrices.put(currency, new LastKnownPrice(price, System.currentTimeMillis() / 1000));
+            }
+            return price;
         } catch (Exception e) {
             log.error("Error fetching price from CoinGecko for {}: {}", currency, e.getMessage());
+            return getStalePrice(currency);
+        }
+    }
+    
+    /**
+     * 降级：返回未超过最大年龄的最近一次价格
+     */
+    private String getStalePrice(String currency) {
+        LastKnownPrice last = lastKnownPrices.get(currency);
+        if (last == null || System.currentTimeMillis() / 1000 - last.fetchedAt > stalePriceMaxAge) {
             return null;
         }
+        log.warn("Using stale {} price from {} seconds ago", currency, System.currentTimeMillis() / 1000 - last.fetchedAt);
+        return last.price;
     }
     
     /**
@@ -114,6 +144,19 @@ public class PriceService {
         }
     }
     
+    /**
+     * 最近一次成功获取的价格
+     */
+    private static class LastKnownPrice {
+        private final String price;
+        private final long fetchedAt;
+        
+        public LastKnownPrice(String price, long fetchedAt) {
+            this.price = price;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+    
     /**
      * 价格缓存类
      */
@@ -0,0 +1,423 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSONObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Replicate Prediction Engine
+ * Submits predictions without blocking request threads and resolves them from a single shared poller.
+ * The poller reads the PredictionStateStore first; Replicate is only polled when webhooks have not answered.
+ * 每个 in-flight prediction 对应一个 CompletableFuture，由调度线程按批次轮询 Replicate 并完成
+ */
+@Slf4j
+@Service
+public class ReplicatePredictionEngine {
+
+    @Value("${replicate.api.timeout:300000}")
+    private long timeoutMs;
+
+    @Value("${replicate.api.poll-interval:2000}")
+    private long pollIntervalMs;
+
+    // 每次 tick 最多轮询的 prediction 数量
+    @Value("${replicate.engine.poll-batch-size:20}")
+    private int pollBatchSize;
+
+    // 调用 Replicate 的 IO 线程数（创建 + 轮询共用）
+    @Value("${replicate.engine.io-threads:8}")
+    private int ioThreads;
+
+    // IO 队列容量，超过后新的生成请求直接拒绝
+    @Value("${replicate.engine.queue-capacity:200}")
+    private int queueCapacity;
+
+    // 启用 webhook 时回退到 Replicate 轮询的间隔，其余 tick 只读取状态存储
+    @Value("${replicate.engine.webhook-fallback-poll-interval:15000}")
+    private long webhookFallbackPollMs;
+
+    // 状态存储中非终态记录的可信时间，超过后查询会回退到 Replicate
+    @Value("${replicate.state.stale-millis:10000}")
+    private long staleMillis;
+
+    @Autowired
+    private ReplicateService replicateService;
+
+    @Autowired
+    private PredictionStateStore stateStore;
+
+    private final Map<String, InFlightPrediction> inFlight = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService poller;
+
+    private ThreadPoolExecutor ioExecutor;
+
+    @PostConstruct
+    public void init() {
+        CustomizableThreadFactory ioThreadFactory = new CustomizableThreadFactory("replicate-io-");
+        ioThreadFactory.setDaemon(true);
+        ioExecutor = new ThreadPoolExecutor(ioThreads, ioThreads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), ioThreadFactory, new ThreadPoolExecutor.AbortPolicy());
+        ioExecutor.allowCoreThreadTimeOut(true);
+
+        CustomizableThreadFactory pollerThreadFactory = new CustomizableThreadFactory("replicate-poller-");
+        pollerThreadFactory.setDaemon(true);
+        poller = Executors.newSingleThreadScheduledExecutor(pollerThreadFactory);
+        poller.scheduleWithFixedDelay(this::pollInFlight, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+
+        log.info("Replicate prediction engine started: pollInterval={}ms, timeout={}ms, batchSize={}, ioThreads={}",
+            pollIntervalMs, timeoutMs, pollBatchSize, ioThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        ioExecutor.shutdownNow();
+        inFlight.values().forEach(p -> p.future.complete(
+            errorResult(p.predictionId, null, "Service is shutting down, please query the prediction status later")));
+        inFlight.clear();
+    }
+
+    /**
+     * Generate image asynchronously
+     * The returned future completes once the prediction reaches a final state or times out.
+     * @param prompt Text prompt describing the image to generate
+     * @param imageUrls Optional list of input image URLs (max 3 images)
+     * @param aspectRatio Optional aspect ratio
+     * @return Future with the same result map the synchronous API used to return
+     */
+    public CompletableFuture<Map<String, Object>> generateImage(String prompt, List<String> imageUrls, String aspectRatio) {
+        return create(prompt, imageUrls, aspectRatio).thenCompose(this::track);
+    }
+
+    /**
+     * Start image generation and return as soon as the prediction is created
+     * Progress is delivered through PredictionEventHub (SSE) and the status endpoint.
+     * @param prompt Text prompt describing the image to generate
+     * @param imageUrls Optional list of input image URLs (max 3 images)
+     * @param aspectRatio Optional aspect ratio
+     * @param onFinished Called once with the final result: the creation error, or the result map
+     *                   {@link #generateImage} would have returned (final state, timeout or shutdown)
+     * @return Future with success, predictionId and initial status, or error
+     */
+    public CompletableFuture<Map<String, Object>> submitImage(String prompt, List<String> imageUrls, String aspectRatio,
+                                                              Consumer<Map<String, Object>> onFinished) {
+        return create(prompt, imageUrls, aspectRatio).thenApply(created -> {
+            if (!Boolean.TRUE.equals(created.get("success"))) {
+                notifyFinished(onFinished, created);
+                return created;
+            }
+            // 终态由调度线程/IO 线程完成，回调不能阻塞
+            track(created).thenAccept(result -> notifyFinished(onFinished, result));
+            Map<String, Object> result = new HashMap<>(created);
+            result.remove("prediction");
+            return result;
+        });
+    }
+
+    private void notifyFinished(Consumer<Map<String, Object>> onFinished, Map<String, Object> result) {
+        try {
+            onFinished.accept(result);
+        } catch (Exception e) {
+            log.error("Prediction completion callback failed: {}", result.get("predictionId"), e);
+        }
+    }
+
+    private CompletableFuture<Map<String, Object>> create(String prompt, List<String> imageUrls, String aspectRatio) {
+        try {
+            return CompletableFuture
+                .supplyAsync(() -> replicateService.createPrediction(prompt, imageUrls, aspectRatio), ioExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Replicate submit queue is full ({} queued), rejecting image generation", ioExecutor.getQueue().size());
+            return CompletableFuture.completedFuture(
+                errorResult(null, null, "Image generation is busy, please try again later"));
+        }
+    }
+
+    /**
+     * Get prediction status, served from the state store when possible
+     * Falls back to Replicate only for unknown or stale predictions.
+     * @param predictionId Prediction ID
+     * @return Status map (success, status, predictionId, imageUrl, error)
+     */
+    public Map<String, Object> getPredictionStatus(String predictionId) {
+        Map<String, Object> state = stateStore.get(predictionId);
+        if (state != null && isFresh(state)) {
+            Map<String, Object> result = new HashMap<>(state);
+            result.remove("updatedAt");
+            result.put("success", true);
+            return result;
+        }
+
+        Map<String, Object> result = replicateService.getPredictionStatus(predictionId);
+        if (Boolean.TRUE.equals(result.get("success"))) {
+            stateStore.save(predictionId, (String) result.get("status"),
+                (String) result.get("imageUrl"), (String) result.get("error"));
+        }
+        return result;
+    }
+
+    /**
+     * Apply a verified webhook update: persist it and complete the local in-flight future if this node owns it
+     * Callers must have checked the webhook signature; unverified callbacks go through {@link #refresh(String)}.
+     * @param predictionId Prediction ID
+     * @param status Replicate status
+     * @param output Prediction output
+     * @param error Error message
+     */
+    public void onWebhook(String predictionId, String status, Object output, String error) {
+        String imageUrl = "succeeded".equals(status) && output != null ? ReplicateService.extractImageUrl(output) : null;
+        Map<String, Object> state = stateStore.save(predictionId, status, imageUrl, error);
+        InFlightPrediction p = inFlight.get(predictionId);
+        if (p != null && state != null) {
+            p.lastStatus = (String) state.get("status");
+            if (ReplicateService.isTerminal(p.lastStatus)) {
+                finish(p, toResult(state));
+            }
+        }
+    }
+
+    /**
+     * Re-fetch a prediction from Replicate and apply its state
+     * Used for unsigned webhooks: the callback only tells us which prediction to look at, its payload is not trusted.
+     * @param predictionId Prediction ID
+     * @return false if the IO queue is full and the refresh was dropped (the poller will pick it up later)
+     */
+    public boolean refresh(String predictionId) {
+        try {
+            ioExecutor.execute(() -> {
+                try {
+                    apply(predictionId, replicateService.fetchPrediction(predictionId));
+                } catch (Exception e) {
+                    log.warn("Failed to refresh prediction {}: {}", predictionId, e.getMessage());
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Replicate IO queue is full, dropping webhook refresh for {}", predictionId);
+            return false;
+        }
+    }
+
+    /**
+     * Number of predictions currently waiting for a final state
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private CompletableFuture<Map<String, Object>> track(Map<String, Object> created) {
+        if (!Boolean.TRUE.equals(created.get("success"))) {
+            return CompletableFuture.completedFuture(created);
+        }
+
+        String predictionId = (String) created.get("predictionId");
+        JSONObject prediction = (JSONObject) created.get("prediction");
+        if (prediction != null) {
+            saveState(predictionId, prediction);
+            if (ReplicateService.isTerminal(prediction.getString("status"))) {
+                return CompletableFuture.completedFuture(toResult(predictionId, prediction));
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        InFlightPrediction p = new InFlightPrediction(predictionId, now + timeoutMs, now + pollIntervalMs,
+            now + (replicateService.isWebhookEnabled() ? webhookFallbackPollMs : pollIntervalMs));
+        inFlight.put(predictionId, p);
+        // webhook 可能在 put 之前已经到达
+        Map<String, Object> state = stateStore.get(predictionId);
+        if (state != null && ReplicateService.isTerminal((String) state.get("status"))) {
+            finish(p, toResult(state));
+        }
+        return p.future;
+    }
+
+    /**
+     * Shared poller tick: expire timed-out predictions and poll the longest-waiting due ones in one batch
+     */
+    private void pollInFlight() {
+        try {
+            if (inFlight.isEmpty()) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            List<InFlightPrediction> due = new ArrayList<>();
+            for (InFlightPrediction p : inFlight.values()) {
+                if (now >= p.deadline) {
+                    log.error("Prediction timed out after {} seconds: {}", timeoutMs / 1000, p.predictionId);
+                    finish(p, errorResult(p.predictionId, p.lastStatus,
+                        "Prediction timed out after " + (timeoutMs / 1000) + " seconds"));
+                } else if (now >= p.nextPollAt) {
+                    due.add(p);
+                }
+            }
+            if (due.isEmpty()) {
+                return;
+            }
+
+            // 最久未轮询的优先，避免批次截断造成饥饿
+            due.sort(Comparator.comparingLong(p -> p.nextPollAt));
+            List<CompletableFuture<Void>> batch = new ArrayList<>(Math.min(due.size(), pollBatchSize));
+            for (InFlightPrediction p : due.subList(0, Math.min(due.size(), pollBatchSize))) {
+                p.nextPollAt = now + pollIntervalMs;
+                try {
+                    batch.add(CompletableFuture.runAsync(() -> pollOnce(p), ioExecutor));
+                } catch (RejectedExecutionException e) {
+                    // IO 队列已满，留到下一个 tick
+                    break;
+                }
+            }
+            CompletableFuture.allOf(batch.toArray(new CompletableFuture[0])).join();
+        } catch (Exception e) {
+            log.error("Replicate poller tick failed", e);
+        }
+    }
+
+    private void pollOnce(InFlightPrediction p) {
+        try {
+            // webhook 已写入终态时无需请求 Replicate
+            Map<String, Object> state = stateStore.get(p.predictionId);
+            if (state != null && ReplicateService.isTerminal((String) state.get("status"))) {
+                finish(p, toResult(state));
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now < p.nextReplicatePollAt) {
+                return;
+            }
+            p.nextReplicatePollAt = now + (replicateService.isWebhookEnabled() ? webhookFallbackPollMs : pollIntervalMs);
+
+            apply(p.predictionId, replicateService.fetchPrediction(p.predictionId));
+        } catch (Exception e) {
+            // 单次轮询失败不终止 prediction，等待下一次轮询或超时
+            log.warn("Failed to poll prediction {}: {}", p.predictionId, e.getMessage());
+        }
+    }
+
+    /**
+     * Store a prediction fetched from Replicate and complete the local in-flight future once it is final
+     */
+    private void apply(String predictionId, JSONObject prediction) {
+        saveState(predictionId, prediction);
+        String status = prediction.getString("status");
+        log.debug("Prediction {} status: {}", predictionId, status);
+        InFlightPrediction p = inFlight.get(predictionId);
+        if (p != null) {
+            p.lastStatus = status;
+            if (ReplicateService.isTerminal(status)) {
+                finish(p, toResult(predictionId, prediction));
+            }
+        }
+    }
+
+    private void finish(InFlightPrediction p, Map<String, Object> result) {
+        if (inFlight.remove(p.predictionId, p)) {
+            p.future.complete(result);
+        }
+    }
+
+    private boolean isFresh(Map<String, Object> state) {
+        if (ReplicateService.isTerminal((String) state.get("status"))) {
+            return true;
+        }
+        Object updatedAt = state.get("updatedAt");
+        return updatedAt instanceof Number
+            && System.currentTimeMillis() - ((Number) updatedAt).longValue() < staleMillis;
+    }
+
+    private void saveState(String predictionId, JSONObject prediction) {
+        String status = prediction.getString("status");
+        Object output = prediction.get("output");
+        String imageUrl = "succeeded".equals(status) && output != null ? ReplicateService.extractImageUrl(output) : null;
+        stateStore.save(predictionId, status, imageUrl, prediction.getString("error"));
+    }
+
+    private Map<String, Object> toResult(Map<String, Object> state) {
+        String predictionId = (String) state.get("predictionId");
+        String status = (String) state.get("status");
+        String imageUrl = (String) state.get("imageUrl");
+        if ("succeeded".equals(status) && imageUrl != null) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("imageUrl", imageUrl);
+            result.put("predictionId", predictionId);
+            result.put("status", status);
+            log.info("Image generated successfully: {}", imageUrl);
+            return result;
+        }
+        if ("succeeded".equals(status)) {
+            return errorResult(predictionId, status, "No output in prediction result");
+        }
+        String error = (String) state.get("error");
+        return errorResult(predictionId, status, error != null ? error : "Prediction " + status);
+    }
+
+    private Map<String, Object> toResult(String predictionId, JSONObject prediction) {
+        String status = prediction.getString("status");
+        if ("succeeded".equals(status)) {
+            Object output = prediction.get("output");
+            if (output == null) {
+                return errorResult(predictionId, status, "No output in prediction result");
+            }
+            String imageUrl = ReplicateService.extractImageUrl(output);
+            if (imageUrl == null) {
+                return errorResult(predictionId, status, "Invalid output format: " + output);
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("imageUrl", imageUrl);
+            result.put("predictionId", predictionId);
+            result.put("status", status);
+            log.info("Image generated successfully: {}", imageUrl);
+            return result;
+        }
+
+        String error = prediction.getString("error");
+        log.error("Prediction {}: {}", status, error);
+        return errorResult(predictionId, status, error != null ? error : "Prediction " + status);
+    }
+
+    private Map<String, Object> errorResult(String predictionId, String status, String error) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", false);
+        result.put("error", error);
+        if (predictionId != null) {
+            result.put("predictionId", predictionId);
+        }
+        if (status != null) {
+            result.put("status", status);
+        }
+        return result;
+    }
+
+    private static class InFlightPrediction {
+        private final String predictionId;
+        private final long deadline;
+        private final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        private volatile long nextPollAt;
+        private volatile long nextReplicatePollAt;
+        private volatile String lastStatus;
+
+        private InFlightPrediction(String predictionId, long deadline, long nextPollAt, long nextReplicatePollAt) {
+            this.predictionId = predictionId;
+            this.deadline = deadline;
+            this.nextPollAt = nextPollAt;
+            this.nextReplicatePollAt = nextReplicatePollAt;
+        }
+    }
+}
@@ -2,12 +2,19 @@ package com.novelhub.service;
 
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
+import com.novelhub.utils.IntegrationGuard;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,16 +39,30 @@ public class ReplicateService {
     @Value("${replicate.api.model:google/nano-banana}")
     private String modelName;
 
-    @Value("${replicate.api.timeout:300000}")
-    private int timeoutMs;
+    @Value("${replicate.webhook.enabled:false}")
+    private boolean webhookEnabled;
 
-    @Value("${replicate.api.poll-interval:2000}")
-    private int pollIntervalMs;
+    @Value("${replicate.webhook.url:}")
+    private String webhookUrl;
+
+    // Webhook signing secret (whsec_...), from GET /v1/webhooks/default/secret
+    @Value("${replicate.webhook.secret:}")
+    private String webhookSecret;
+
+    // 签名时间戳允许的最大偏差，超过视为重放
+    @Value("${replicate.webhook.tolerance-seconds:300}")
+    private long webhookToleranceSeconds;
+
+    private static final String INTEGRATION = "replicate";
 
     private final RestTemplate restTemplate;
 
-    public ReplicateService() {
-        this.restTemplate = new RestTemplate();
+    private final IntegrationGuard integrationGuard;
+
+    public ReplicateService(@Qualifier("replicateRestTemplate") RestTemplate restTemplate,
+                            IntegrationGuard integrationGuard) {
+        this.restTemplate = restTemplate;
+        this.integrationGuard = integrationGuard;
     }
 
     @jakarta.annotation.PostConstruct
@@ -97,13 +118,14 @@ public class ReplicateService {
     }
 
     /**
-     * Generate image using Nano Banana model
+     * Create a Nano Banana prediction without waiting for it to finish
+     * Polling for the final result is handled by ReplicatePredictionEngine
      * @param prompt Text prompt describing the image to generate
      * @param imageUrls Optional list of input image URLs for editing/fusion (max 3 images)
      * @param aspectRatio Optional aspect ratio (e.g., "16:9", "1:1", "9:16")
-     * @return Generated image URL or error message
+     * @return Map with predictionId, status and the raw prediction, or error message
      */
-    public Map<String, Object> generateImage(String prompt, List<String> imageUrls, String aspectRatio) {
+    public Map<String, Object> createPrediction(String prompt, List<String> imageUrls, String aspectRatio) {
         Map<String, Object> result = new HashMap<>();
         
         try {
@@ -141,6 +163,11 @@ public class ReplicateService {
             Map<String, Object> requestBody = new HashMap<>();
             requestBody.put("input", input);
             requestBody.put("stream", false);
+            if (isWebhookEnabled()) {
+                // Replicate pushes start/completed events to /api/business/callback
+                requestBody.put("webhook", webhookUrl);
+                requestBody.put("webhook_events_filter", List.of("start", "completed"));
+            }
 
             // Create HTTP headers
             HttpHeaders headers = new HttpHeaders();
@@ -203,12 +230,12 @@ public class ReplicateService {
             
             ResponseEntity<String> createResponse;
             try {
-                createResponse = restTemplate.exchange(
+                createResponse = integrationGuard.execute(INTEGRATION, () -> restTemplate.exchange(
                     createUrl,
                     HttpMethod.POST,
                     requestEntity,
                     String.class
-                );
+                ));
                 
                 // Log response details
                 log.info("=== Replicate API Response ===");
@@ -249,6 +276,11 @@ public class ReplicateService {
                 
                 // Re-throw for other client errors
                 throw e;
+            } catch (IntegrationGuard.IntegrationUnavailableException e) {
+                // Bulkhead full or circuit open - fail fast without calling Replicate
+                result.put("success", false);
+                result.put("error", "Image generation service is temporarily unavailable, please try again later");
+                return result;
             } catch (Exception e) {
                 log.error("Unexpected error during API call: {}", e.getMessage(), e);
                 result.put("success", false);
@@ -277,107 +309,143 @@ public class ReplicateService {
 
             log.info("Prediction created with ID: {}", predictionId);
 
-            // Step 2: Poll for result
-            String status = createResult.getString("status");
-            JSONObject predictionResult = createResult;
-            
-            long startTime = System.currentTimeMillis();
-            while (!status.equals("succeeded") && !status.equals("failed") && !status.equals("canceled")) {
-                // Check timeout
-                if (System.currentTimeMillis() - startTime > timeoutMs) {
-                    result.put("success", false);
-                    result.put("error", "Prediction timed out after " + (timeoutMs / 1000) + " seconds");
-                    result.put("predictionId", predictionId);
-                    return result;
-                }
+            result.put("success", true);
+            result.put("predictionId", predictionId);
+            result.put("status", createResult.getString("status"));
+            result.put("prediction", createResult);
+            return result;
 
-                // Wait before next poll
-                try {
-                    Thread.sleep(pollIntervalMs);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    result.put("success", false);
-                    result.put("error", "Polling interrupted");
-                    return result;
-                }
+        } catch (Exception e) {
+            log.error("Error creating prediction with Replicate API", e);
+            result.put("success", false);
+            result.put("error", "Internal error: " + e.getMessage());
+            return result;
+        }
+    }
 
-                // Get prediction status
-                String statusUrl = replicateBaseUrl + "/predictions/" + predictionId;
-                HttpEntity<String> statusEntity = new HttpEntity<>(headers);
-                
-                ResponseEntity<String> statusResponse = restTemplate.exchange(
-                    statusUrl,
-                    HttpMethod.GET,
-                    statusEntity,
-                    String.class
-                );
+    /**
+     * Fetch the current state of a prediction from Replicate
+     * @param predictionId Prediction ID
+     * @return Raw prediction JSON
+     * @throws IllegalStateException if Replicate does not answer with 200 OK
+     */
+    public JSONObject fetchPrediction(String predictionId) {
+        HttpHeaders headers = new HttpHeaders();
+        // Replicate API uses "Bearer" prefix for Authorization
+        headers.set("Authorization", "Bearer " + replicateApiToken);
+        HttpEntity<String> entity = new HttpEntity<>(headers);
+
+        String statusUrl = replicateBaseUrl + "/predictions/" + predictionId;
+        ResponseEntity<String> response = integrationGuard.execute(INTEGRATION, () -> restTemplate.exchange(
+            statusUrl,
+            HttpMethod.GET,
+            entity,
+            String.class
+        ));
+
+        if (response.getStatusCode() != HttpStatus.OK) {
+            throw new IllegalStateException("Failed to get prediction status: " + response.getStatusCode());
+        }
 
-                if (statusResponse.getStatusCode() != HttpStatus.OK) {
-                    result.put("success", false);
-                    result.put("error", "Failed to get prediction status: " + statusResponse.getStatusCode());
-                    return result;
-                }
+        return JSON.parseObject(response.getBody());
+    }
 
-                predictionResult = JSON.parseObject(statusResponse.getBody());
-                status = predictionResult.getString("status");
-                
-                log.debug("Prediction status: {}", status);
+    /**
+     * Whether predictions are created with a webhook callback
+     * @return true if webhook is enabled and a callback URL is configured
+     */
+    public boolean isWebhookEnabled() {
+        return webhookEnabled && webhookUrl != null && !webhookUrl.isBlank();
+    }
+
+    /**
+     * Whether a webhook signing secret is configured
+     * Without it, webhook payloads are only used as a hint to re-fetch the prediction from Replicate.
+     * @return true if webhook signatures can be verified
+     */
+    public boolean hasWebhookSecret() {
+        return webhookSecret != null && !webhookSecret.isBlank();
+    }
+
+    /**
+     * Verify a Replicate webhook signature
+     * Signed content is "{webhook-id}.{webhook-timestamp}.{body}", HMAC-SHA256 with the base64 part of the secret.
+     * The signature header holds one or more space-separated "v1,{base64}" entries.
+     * @param webhookId webhook-id header
+     * @param timestamp webhook-timestamp header (unix seconds)
+     * @param body Raw request body
+     * @param signatureHeader webhook-signature header
+     * @return true if the timestamp is recent and one of the signatures matches
+     */
+    public boolean verifyWebhookSignature(String webhookId, String timestamp, String body, String signatureHeader) {
+        if (!hasWebhookSecret() || webhookId == null || timestamp == null || body == null || signatureHeader == null) {
+            return false;
+        }
+        try {
+            long sentAt = Long.parseLong(timestamp.trim());
+            if (Math.abs(System.currentTimeMillis() / 1000 - sentAt) > webhookToleranceSeconds) {
+                log.warn("Rejecting Replicate webhook {} with stale timestamp {}", webhookId, timestamp);
+                return false;
             }
 
-            // Step 3: Process result
-            if (status.equals("succeeded")) {
-                Object output = predictionResult.get("output");
-                
-                if (output == null) {
-                    result.put("success", false);
-                    result.put("error", "No output in prediction result");
-                    return result;
+            String secret = webhookSecret.trim();
+            if (secret.startsWith("whsec_")) {
+                secret = secret.substring("whsec_".length());
+            }
+            Mac hmac = Mac.getInstance("HmacSHA256");
+            hmac.init(new SecretKeySpec(Base64.getDecoder().decode(secret), "HmacSHA256"));
+            byte[] expected = hmac.doFinal((webhookId + "." + timestamp + "." + body).getBytes(StandardCharsets.UTF_8));
+
+            for (String entry : signatureHeader.trim().split(" ")) {
+                int comma = entry.indexOf(',');
+                if (comma < 0 || !"v1".equals(entry.substring(0, comma))) {
+                    continue;
                 }
-
-                // Handle different output types
-                String generatedImageUrl = null;
-                if (output instanceof String) {
-                    // Single image URL
-                    generatedImageUrl = (String) output;
-                } else if (output instanceof List) {
-                    // Multiple images (list of URLs)
-                    List<?> outputList = (List<?>) output;
-                    if (!outputList.isEmpty() && outputList.get(0) instanceof String) {
-                        generatedImageUrl = (String) outputList.get(0);
-                    }
+                byte[] actual;
+                try {
+                    actual = Base64.getDecoder().decode(entry.substring(comma + 1));
+                } catch (IllegalArgumentException e) {
+                    continue;
                 }
-
-                if (generatedImageUrl == null || generatedImageUrl.isEmpty()) {
-                    result.put("success", false);
-                    result.put("error", "Invalid output format: " + output);
-                    return result;
+                if (MessageDigest.isEqual(expected, actual)) {
+                    return true;
                 }
-
-                result.put("success", true);
-                result.put("imageUrl", generatedImageUrl);
-                result.put("predictionId", predictionId);
-                result.put("status", status);
-                log.info("Image generated successfully: {}", generatedImageUrl);
-                
-                return result;
-            } else {
-                // Failed or canceled
-                String error = predictionResult.getString("error");
-                result.put("success", false);
-                result.put("error", error != null ? error : "Prediction " + status);
-                result.put("status", status);
-                result.put("predictionId", predictionId);
-                return result;
             }
-
+            return false;
         } catch (Exception e) {
-            log.error("Error generating image with Replicate API", e);
-            result.put("success", false);
-            result.put("error", "Internal error: " + e.getMessage());
-            return result;
+            log.error("Error verifying Replicate webhook signature", e);
+            return false;
         }
     }
 
+    /**
+     * Check whether a prediction status is final
+     * @param status Replicate prediction status
+     * @return true for succeeded, failed and canceled
+     */
+    public static boolean isTerminal(String status) {
+        return "succeeded".equals(status) || "failed".equals(status) || "canceled".equals(status);
+    }
+
+    /**
+     * Extract the first image URL from a prediction output
+     * @param output Prediction output (single URL or list of URLs)
+     * @return Image URL or null if the output has an unexpected format
+     */
+    public static String extractImageUrl(Object output) {
+        if (output instanceof String) {
+            // Single image URL
+            return (String) output;
+        } else if (output instanceof List) {
+            // Multiple images (list of URLs)
+            List<?> outputList = (List<?>) output;
+            if (!outputList.isEmpty() && outputList.get(0) instanceof String) {
+                return (String) outputList.get(0);
+            }
+        }
+        return null;
+    }
+
     /**
      * Get prediction status
      * @param predictionId Prediction ID
@@ -393,26 +461,7 @@ public class ReplicateService {
                 return result;
             }
 
-            HttpHeaders headers = new HttpHeaders();
-            // Replicate API uses "Bearer" prefix for Authorization
-            headers.set("Authorization", "Bearer " + replicateApiToken);
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-
-            String statusUrl = replicateBaseUrl + "/predictions/" + predictionId;
-            ResponseEntity<String> response = restTemplate.exchange(
-                statusUrl,
-                HttpMethod.GET,
-                entity,
-                String.class
-            );
-
-            if (response.getStatusCode() != HttpStatus.OK) {
-                result.put("success", false);
-                result.put("error", "Failed to get prediction status: " + response.getStatusCode());
-                return result;
-            }
-
-            JSONObject predictionResult = JSON.parseObject(response.getBody());
+            JSONObject predictionResult = fetchPrediction(predictionId);
             String status = predictionResult.getString("status");
             
             result.put("success", true);
@@ -422,16 +471,7 @@ public class ReplicateService {
             if (status.equals("succeeded")) {
                 Object output = predictionResult.get("output");
                 if (output != null) {
-                    String imageUrl = null;
-                    if (output instanceof String) {
-                        imageUrl = (String) output;
-                    } else if (output instanceof List) {
-                        List<?> outputList = (List<?>) output;
-                        if (!outputList.isEmpty() && outputList.get(0) instanceof String) {
-                            imageUrl = (String) outputList.get(0);
-                        }
-                    }
-                    result.put("imageUrl", imageUrl);
+                    result.put("imageUrl", extractImageUrl(output));
                 }
             } else if (status.equals("failed") || status.equals("canceled")) {
                 String error = predictionResult.getString("error");
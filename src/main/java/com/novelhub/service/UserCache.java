@@ -0,0 +1,359 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.novelhub.entity.User;
+import com.novelhub.utils.RedisUtil;
+import com.novelhub.vo.response.UserProfileDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * User Cache
+ * Read-through cache for user profiles: Caffeine (per node) -> Redis (shared) -> MySQL.
+ * Only {@link UserProfileDTO} is cached; password hashes, verification tokens and nonces never leave MySQL,
+ * so authentication and password changes must read the row directly.
+ * Profiles are stored once by ID; username/email map to the ID. Writers call {@link #evict(User)},
+ * which clears both tiers (after commit, then once more after a short delay) and broadcasts the eviction
+ * to the other nodes over Redis pub/sub.
+ * 本地层 TTL 较短，即使丢失失效消息也只会在短时间内读到旧数据
+ */
+@Slf4j
+@Service
+public class UserCache implements MessageListener {
+
+    private static final String KEY_PREFIX = "user:profile:";
+
+    /**
+     * Pub/sub channel carrying evictions ({userId, username, email})
+     */
+    public static final String INVALIDATE_CHANNEL = "user:cache:invalidate";
+
+    @Value("${user.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${user.cache.local-size:10000}")
+    private long localSize;
+
+    @Value("${user.cache.local-ttl-seconds:60}")
+    private long localTtlSeconds;
+
+    @Value("${user.cache.redis-ttl-seconds:600}")
+    private long redisTtlSeconds;
+
+    // 延迟双删：第二次删除的延迟，应大于一次 MySQL 读 + 回填缓存的耗时
+    @Value("${user.cache.double-delete-delay-millis:1000}")
+    private long doubleDeleteDelayMillis;
+
+    @Autowired
+    private RedisUtil redisUtil;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    // userId -> profile
+    private Cache<Long, UserProfileDTO> users;
+
+    // username / email -> userId
+    private Cache<String, Long> usernameIndex;
+
+    private Cache<String, Long> emailIndex;
+
+    private ScheduledExecutorService delayedEvictor;
+
+    @PostConstruct
+    public void init() {
+        users = Caffeine.newBuilder()
+            .maximumSize(localSize)
+            .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+            .build();
+        usernameIndex = Caffeine.newBuilder()
+            .maximumSize(localSize)
+            .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+            .build();
+        emailIndex = Caffeine.newBuilder()
+            .maximumSize(localSize)
+            .expireAfterWrite(localTtlSeconds, TimeUnit.SECONDS)
+            .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-cache-evict-");
+        threadFactory.setDaemon(true);
+        delayedEvictor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        delayedEvictor.shutdownNow();
+    }
+
+    /**
+     * Get user profile by ID
+     * @param userId User ID
+     * @param loader Database lookup on a miss
+     * @return Copy of the profile (safe to modify), or null if not found
+     */
+    public UserProfileDTO getById(Long userId, Function<Long, User> loader) {
+        if (!enabled || userId == null) {
+            return toProfile(loader.apply(userId));
+        }
+        UserProfileDTO profile = users.getIfPresent(userId);
+        if (profile == null) {
+            profile = readRedis(userId);
+            if (profile == null) {
+                profile = toProfile(loader.apply(userId));
+                if (profile == null) {
+                    return null;
+                }
+                writeRedis(profile);
+            }
+            putLocal(profile);
+        }
+        return copy(profile);
+    }
+
+    /**
+     * Get user profile by username
+     * @param username Username
+     * @param loader Database lookup on a miss
+     * @return Copy of the profile (safe to modify), or null if not found
+     */
+    public UserProfileDTO getByUsername(String username, Function<String, User> loader) {
+        return getByIndex("username", usernameIndex, username, loader);
+    }
+
+    /**
+     * Get user profile by email
+     * @param email Email
+     * @param loader Database lookup on a miss
+     * @return Copy of the profile (safe to modify), or null if not found
+     */
+    public UserProfileDTO getByEmail(String email, Function<String, User> loader) {
+        return getByIndex("email", emailIndex, email, loader);
+    }
+
+    /**
+     * Evict a user after it was written (both tiers, all nodes)
+     * Runs after the surrounding transaction commits (immediately without one) and once more after
+     * user.cache.double-delete-delay-millis, so a reader that loaded the old row before the commit
+     * cannot leave it cached.
+     * @param user User as loaded before the update (old username/email are evicted as well)
+     */
+    public void evict(User user) {
+        if (!enabled || user == null || user.getUserId() == null) {
+            return;
+        }
+        Long userId = user.getUserId();
+        String username = user.getUsername();
+        String email = user.getEmail();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictTwice(userId, username, email);
+                }
+            });
+        } else {
+            evictTwice(userId, username, email);
+        }
+    }
+
+    private void evictTwice(Long userId, String username, String email) {
+        evictNow(userId, username, email);
+        try {
+            delayedEvictor.schedule(() -> evictNow(userId, username, email),
+                doubleDeleteDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 关闭中，依赖 TTL 过期
+            log.debug("Delayed eviction of user {} skipped: {}", userId, e.getMessage());
+        }
+    }
+
+    private void evictNow(Long userId, String username, String email) {
+        evictLocal(userId, username, email);
+        try {
+            redisUtil.delete(Arrays.asList(
+                KEY_PREFIX + userId,
+                KEY_PREFIX + "username:" + username,
+                KEY_PREFIX + "email:" + email));
+        } catch (Exception e) {
+            log.warn("Failed to evict cached user {}: {}", userId, e.getMessage());
+        }
+
+        Map<String, Object> message = new HashMap<>();
+        message.put("userId", userId);
+        message.put("username", username);
+        message.put("email", email);
+        try {
+            redisUtil.publish(INVALIDATE_CHANNEL, message);
+        } catch (Exception e) {
+            // 其他节点依赖本地 TTL 过期
+            log.warn("Failed to publish user cache eviction for {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Evict a user by ID only (username/email index entries expire on their own)
+     * @param userId User ID
+     */
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        UserProfileDTO profile = users.getIfPresent(userId);
+        evict(User.builder()
+            .userId(userId)
+            .username(profile != null ? profile.getUsername() : null)
+            .email(profile != null ? profile.getEmail() : null)
+            .build());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            JSONObject event = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+            evictLocal(event.getLong("userId"), event.getString("username"), event.getString("email"));
+        } catch (Exception e) {
+            log.warn("Failed to handle user cache eviction: {}", e.getMessage());
+        }
+    }
+
+    private UserProfileDTO getByIndex(String indexName, Cache<String, Long> index, String value,
+                                      Function<String, User> loader) {
+        if (!enabled || value == null) {
+            return toProfile(loader.apply(value));
+        }
+
+        Long userId = index.getIfPresent(value);
+        if (userId == null) {
+            Object cachedId = redisUtil.get(KEY_PREFIX + indexName + ":" + value);
+            if (cachedId instanceof Number) {
+                userId = ((Number) cachedId).longValue();
+            }
+        }
+        if (userId != null) {
+            UserProfileDTO profile = getById(userId, id -> null);
+            // 索引可能指向已改名/改邮箱的用户，校验后再使用
+            if (profile != null
+                && value.equals("username".equals(indexName) ? profile.getUsername() : profile.getEmail())) {
+                index.put(value, userId);
+                return profile;
+            }
+        }
+
+        UserProfileDTO profile = toProfile(loader.apply(value));
+        if (profile == null || profile.getUserId() == null) {
+            return profile;
+        }
+        writeRedis(profile);
+        putLocal(profile);
+        return copy(profile);
+    }
+
+    private void putLocal(UserProfileDTO profile) {
+        users.put(profile.getUserId(), copy(profile));
+        if (profile.getUsername() != null) {
+            usernameIndex.put(profile.getUsername(), profile.getUserId());
+        }
+        if (profile.getEmail() != null) {
+            emailIndex.put(profile.getEmail(), profile.getUserId());
+        }
+    }
+
+    private void evictLocal(Long userId, String username, String email) {
+        if (userId != null) {
+            users.invalidate(userId);
+        }
+        if (username != null) {
+            usernameIndex.invalidate(username);
+        }
+        if (email != null) {
+            emailIndex.invalidate(email);
+        }
+    }
+
+    private UserProfileDTO readRedis(Long userId) {
+        Object cached = redisUtil.get(KEY_PREFIX + userId);
+        if (cached instanceof JSONObject) {
+            try {
+                return ((JSONObject) cached).to(UserProfileDTO.class);
+            } catch (Exception e) {
+                log.warn("Failed to read cached user {}: {}", userId, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private void writeRedis(UserProfileDTO profile) {
+        try {
+            redisUtil.set(KEY_PREFIX + profile.getUserId(), profile, redisTtlSeconds, TimeUnit.SECONDS);
+            if (profile.getUsername() != null) {
+                redisUtil.set(KEY_PREFIX + "username:" + profile.getUsername(), profile.getUserId(), redisTtlSeconds, TimeUnit.SECONDS);
+            }
+            if (profile.getEmail() != null) {
+                redisUtil.set(KEY_PREFIX + "email:" + profile.getEmail(), profile.getUserId(), redisTtlSeconds, TimeUnit.SECONDS);
+            }
+        } catch (Exception e) {
+            // Redis 不可用时只使用本地层
+            log.warn("Failed to cache user {}: {}", profile.getUserId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Project a tb_user row to the cached profile, dropping credentials
+     */
+    private static UserProfileDTO toProfile(User user) {
+        if (user == null) {
+            return null;
+        }
+        return UserProfileDTO.builder()
+            .userId(user.getUserId())
+            .username(user.getUsername())
+            .email(user.getEmail())
+            .nickname(user.getNickname())
+            .avatar(user.getAvatar())
+            .phone(user.getPhone())
+            .gender(user.getGender())
+            .birthday(user.getBirthday())
+            .introduction(user.getIntroduction())
+            .status(user.getStatus())
+            .walletAddress(user.getWalletAddress())
+            .walletType(user.getWalletType())
+            .createdAt(user.getCreatedAt())
+            .updatedAt(user.getUpdatedAt())
+            .build();
+    }
+
+    /**
+     * Never hand out the cached instance
+     */
+    private UserProfileDTO copy(UserProfileDTO profile) {
+        UserProfileDTO copy = new UserProfileDTO();
+        BeanUtils.copyProperties(profile, copy);
+        return copy;
+    }
+}
@@ -7,6 +7,7 @@ import com.novelhub.enums.ErrorMessage;
 import com.novelhub.mapper.UserMapper;
 import com.novelhub.utils.EmailUtil;
 import com.novelhub.utils.PasswordUtil;
+import com.novelhub.vo.response.UserProfileDTO;
 import com.novelhub.vo.response.UserResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,6 +31,12 @@ public class UserService {
     @Autowired
     private EmailUtil emailUtil;
 
+    @Autowired
+    private UserCache userCache;
+
+    @Autowired
+    private LoginActivityRecorder loginActivityRecorder;
+
     @Value("${points.verification-token-expiry:86400}")
     private long verificationTokenExpiry;
 
@@ -43,6 +50,7 @@ public class UserService {
             String generatedUsername = "user_" + user.getUserId();
             user.setUsername(generatedUsername);
             userMapper.updateById(user);
+            userCache.evict(user);
             log.info(ErrorMessage.AUTO_GENERATED_USERNAME.format(user.getUserId(), generatedUsername));
         }
     }
@@ -113,7 +121,9 @@ public class UserService {
         user.setEmailVerified(1);
         user.setVerificationToken(null);
         user.setTokenExpiry(null);
-        return userMapper.updateById(user) > 0;
+        boolean updated = userMapper.updateById(user) > 0;
+        userCache.evict(user);
+        return updated;
     }
 
     /**
@@ -129,8 +139,8 @@ public class UserService {
             return null;
         }
 
-        // Query user
-        User user = getUserByUsername(username);
+        // Query user (credentials are never cached, always read from MySQL)
+        User user = loadUserByUsername(username);
         if (user == null) {
             log.warn(ErrorMessage.AUTH_USER_NOT_FOUND.getMessage() + " - {}", username);
             return null;
@@ -148,10 +158,35 @@ public class UserService {
             return null;
         }
 
+        // Transparently upgrade hashes created with a different iteration count
+        if (passwordUtil.needsRehash(user.getPassword())) {
+            rehashPassword(user, password);
+        }
+
         log.info(ErrorMessage.AUTH_SUCCESS.getMessage() + ": {}", username);
         return convertToUserResponse(user);
     }
 
+    /**
+     * Re-encode a verified password with the current hashing parameters (best effort)
+     *
+     * @param user User entity
+     * @param password Verified plain text password
+     */
+    private void rehashPassword(User user, String password) {
+        try {
+            User update = new User();
+            update.setUserId(user.getUserId());
+            update.setPassword(passwordUtil.encode(password));
+            userMapper.updateById(update);
+            userCache.evict(user);
+            log.info("Password rehashed for user: {}", user.getUsername());
+        } catch (Exception e) {
+            // 登录已经成功，下次登录时再尝试
+            log.warn("Password rehash failed for user {}: {}", user.getUsername(), e.getMessage());
+        }
+    }
+
     /**
      * Change password
      *
@@ -166,8 +201,8 @@ public class UserService {
             return false;
         }
 
-        // Get user
-        User user = getUserByUsername(username);
+        // Get user (credentials are never cached, always read from MySQL)
+        User user = loadUserByUsername(username);
         if (user == null) {
             log.warn(ErrorMessage.CHANGE_PASSWORD_USER_NOT_FOUND.getMessage() + " - {}", username);
             return false;
@@ -179,9 +214,12 @@ public class UserService {
             throw new RuntimeException(ErrorMessage.CHANGE_PASSWORD_WRONG_OLD_PASSWORD.getMessage());
         }
 
-        // Update password
-        user.setPassword(passwordUtil.encode(newPassword));
-        int result = userMapper.updateById(user);
+        // Update password only
+        User update = new User();
+        update.setUserId(user.getUserId());
+        update.setPassword(passwordUtil.encode(newPassword));
+        int result = userMapper.updateById(update);
+        userCache.evict(user);
 
         if (result > 0) {
             log.info(ErrorMessage.CHANGE_PASSWORD_SUCCESS.getMessage() + ": {}", username);
@@ -198,12 +236,12 @@ public class UserService {
      * @return User response
      */
     public UserResponse getUserProfile(String username) {
-        User user = getUserByUsername(username);
-        if (user == null) {
+        UserProfileDTO profile = getProfileByUsername(username);
+        if (profile == null) {
             log.warn(ErrorMessage.GET_USER_PROFILE_NOT_FOUND.getMessage() + " - {}", username);
             return null;
         }
-        return convertToUserResponse(user);
+        return convertToUserResponse(profile);
     }
 
     /**
@@ -214,7 +252,7 @@ public class UserService {
      * @return User response
      */
     public UserResponse updateProfile(String username, JSONObject updates) {
-        User user = getUserByUsername(username);
+        User user = loadUserByUsername(username);
         if (user == null) {
             log.warn(ErrorMessage.UPDATE_PROFILE_USER_NOT_FOUND.getMessage() + " - {}", username);
             return null;
@@ -238,6 +276,7 @@ public class UserService {
         }
 
         int result = userMapper.updateById(user);
+        userCache.evict(user);
         if (result > 0) {
             log.info(ErrorMessage.UPDATE_PROFILE_SUCCESS.getMessage() + ": {}", username);
             return convertToUserResponse(user);
@@ -255,7 +294,7 @@ public class UserService {
      * @return User response
      */
     public UserResponse updateProfile(String username, String nickname, String avatar) {
-        User user = getUserByUsername(username);
+        User user = loadUserByUsername(username);
         if (user == null) {
             log.warn(ErrorMessage.UPDATE_PROFILE_USER_NOT_FOUND.getMessage() + " - {}", username);
             return null;
@@ -269,6 +308,7 @@ public class UserService {
         }
 
         int result = userMapper.updateById(user);
+        userCache.evict(user);
         if (result > 0) {
             log.info(ErrorMessage.UPDATE_PROFILE_SUCCESS.getMessage() + ": {}", username);
             return convertToUserResponse(user);
@@ -279,53 +319,68 @@ public class UserService {
 
     /**
      * Update last login information
+     * Queued and written in batches by LoginActivityRecorder (also appends to tb_user_login_log).
      *
      * @param userId User ID
      * @param loginIp Login IP
      */
     public void updateLastLogin(Long userId, String loginIp) {
-        userMapper.updateLastLogin(userId, loginIp);
+        loginActivityRecorder.recordLogin(userId, loginIp, null, null);
     }
 
     /**
-     * Get user by username
+     * Get user row by username from MySQL (uncached, includes credentials)
      *
      * @param username Username
      * @return User entity
      */
-    public User getUserByUsername(String username) {
+    private User loadUserByUsername(String username) {
         LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<>();
         queryWrapper.eq(User::getUsername, username);
         return userMapper.selectOne(queryWrapper);
     }
 
     /**
-     * Get user by email
+     * Get user profile by username (cached)
+     *
+     * @param username Username
+     * @return User profile
+     */
+    public UserProfileDTO getProfileByUsername(String username) {
+        return userCache.getByUsername(username, this::loadUserByUsername);
+    }
+
+    /**
+     * Get user profile by email (cached)
      *
      * @param email Email
-     * @return User entity
+     * @return User profile
      */
-    public User getUserByEmail(String email) {
-        LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(User::getEmail, email);
-        return userMapper.selectOne(queryWrapper);
+    public UserProfileDTO getProfileByEmail(String email) {
+        return userCache.getByEmail(email, value -> {
+            LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.eq(User::getEmail, value);
+            return userMapper.selectOne(queryWrapper);
+        });
     }
 
     /**
-     * Get user by user ID
+     * Get user profile by user ID (cached)
      *
      * @param userId User ID
-     * @return User entity
+     * @return User profile
      */
-    public User getUserById(Long userId) {
+    public UserProfileDTO getProfileById(Long userId) {
         if (userId == null) {
             log.warn(ErrorMessage.GET_USER_FAILED_NULL_ID.getMessage());
             return null;
         }
         
-        LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(User::getUserId, userId);
-        return userMapper.selectOne(queryWrapper);
+        return userCache.getById(userId, id -> {
+            LambdaQueryWrapper<User> queryWrapper = new LambdaQueryWrapper<>();
+            queryWrapper.eq(User::getUserId, id);
+            return userMapper.selectOne(queryWrapper);
+        });
     }
 
     /**
@@ -335,7 +390,7 @@ public class UserService {
      * @return Exists
      */
     public boolean usernameExists(String username) {
-        return getUserByUsername(username) != null;
+        return getProfileByUsername(username) != null;
     }
 
     /**
@@ -345,7 +400,7 @@ public class UserService {
      * @return Exists
      */
     public boolean emailExists(String email) {
-        return getUserByEmail(email) != null;
+        return getProfileByEmail(email) != null;
     }
 
     /**
@@ -359,8 +414,8 @@ public class UserService {
             return null;
         }
         
-        User user = getUserByUsername(username);
-        return user != null ? user.getUserId() : null;
+        UserProfileDTO profile = getProfileByUsername(username);
+        return profile != null ? profile.getUserId() : null;
     }
 
     /**
@@ -384,5 +439,22 @@ public class UserService {
                 .updatedAt(java.sql.Timestamp.valueOf(user.getUpdatedAt()))
                 .build();
     }
-}
 
+    /**
+     * Convert cached profile to user response object
+     *
+     * @param profile User profile
+     * @return User response
+     */
+    private UserResponse convertToUserResponse(UserProfileDTO profile) {
+        return UserResponse.builder()
+                .objectId(profile.getUserId().toString())
+                .username(profile.getUsername())
+                .email(profile.getEmail())
+                .nickname(profile.getNickname())
+                .avatar(profile.getAvatar())
+                .createdAt(java.sql.Timestamp.valueOf(profile.getCreatedAt()))
+                .updatedAt(java.sql.Timestamp.valueOf(profile.getUpdatedAt()))
+                .build();
+    }
+}
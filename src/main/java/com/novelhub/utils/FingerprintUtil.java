@@ -7,8 +7,16 @@ import org.springframework.util.StringUtils;
 import javax.crypto.Cipher;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Fingerprint Validation Utility
@@ -20,6 +28,44 @@ public class FingerprintUtil {
     private static final String AES_ALGORITHM = "AES";
     private static final String AES_TRANSFORMATION = "AES/ECB/PKCS5Padding";
 
+    // 每个线程缓存已初始化的 Cipher（按 key，LRU），Cipher 本身不是线程安全的
+    private static final int MAX_CACHED_CIPHERS = 16;
+
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(
+        () -> new LinkedHashMap<>(MAX_CACHED_CIPHERS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cipher> eldest) {
+                return size() > MAX_CACHED_CIPHERS;
+            }
+        });
+
+    // Base64 字符 -> 6 位值，非法字符为 -1
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    // 每个线程复用的解码缓冲区；超过上限的输入走普通解密路径
+    private static final int MAX_BUFFER_SIZE = 4096;
+
+    private static final ThreadLocal<byte[]> DECODE_BUFFER = ThreadLocal.withInitial(() -> new byte[256]);
+
+    private static final int XOR_MISMATCH = 0;
+    private static final int XOR_MATCH = 1;
+    private static final int XOR_FALLBACK = -1;
+
+    // 指纹不匹配日志限流：每个间隔最多输出一条
+    private static final long MISMATCH_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final AtomicLong nextMismatchLogAt = new AtomicLong(System.nanoTime());
+
+    private static final AtomicLong suppressedMismatches = new AtomicLong();
+
     /**
      * Decrypt AES encrypted text
      *
@@ -32,23 +78,84 @@ public class FingerprintUtil {
             // Decode Base64
             byte[] encryptedBytes = Base64.getDecoder().decode(encryptedText);
 
+            // Decrypt with this thread's initialized cipher for the key
+            return decrypt(cipherFor(key), key, encryptedBytes);
+        } catch (Exception e) {
+            log.error("AES decryption failed", e);
+            return null;
+        }
+    }
+
+    /**
+     * Decrypt several AES encrypted texts with the same key
+     * The cipher is looked up once for the whole batch.
+     *
+     * @param encryptedTexts encrypted texts (Base64 encoded)
+     * @param key AES key
+     * @return decrypted texts in the same order; null for entries that fail to decrypt
+     */
+    public static List<String> aesDecryptAll(List<String> encryptedTexts, String key) {
+        List<String> results = new ArrayList<>(encryptedTexts.size());
+        Cipher cipher;
+        try {
+            cipher = cipherFor(key);
+        } catch (Exception e) {
+            log.error("AES cipher initialization failed", e);
+            encryptedTexts.forEach(text -> results.add(null));
+            return results;
+        }
+
+        for (String encryptedText : encryptedTexts) {
+            try {
+                results.add(decrypt(cipher, key, Base64.getDecoder().decode(encryptedText)));
+            } catch (Exception e) {
+                log.debug("AES decryption failed: {}", e.getMessage());
+                results.add(null);
+                // 异常后 cipher 状态不确定，重新获取
+                try {
+                    cipher = cipherFor(key);
+                } catch (Exception ex) {
+                    log.error("AES cipher initialization failed", ex);
+                    while (results.size() < encryptedTexts.size()) {
+                        results.add(null);
+                    }
+                    return results;
+                }
+            }
+        }
+        return results;
+    }
+
+    private static String decrypt(Cipher cipher, String key, byte[] encryptedBytes) throws GeneralSecurityException {
+        try {
+            // doFinal 成功后 cipher 自动回到 init 之后的状态，可直接复用
+            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
+            return new String(decryptedBytes, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            CIPHERS.get().remove(key);
+            throw e;
+        }
+    }
+
+    /**
+     * Get this thread's cipher initialized for DECRYPT_MODE with the key
+     * Avoids the provider lookup and AES key schedule on every call.
+     */
+    private static Cipher cipherFor(String key) throws GeneralSecurityException {
+        Map<String, Cipher> ciphers = CIPHERS.get();
+        Cipher cipher = ciphers.get(key);
+        if (cipher == null) {
             // Prepare AES key (ensure it's 16, 24, or 32 bytes)
             byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
             byte[] normalizedKey = new byte[16]; // Use 128-bit key
             System.arraycopy(keyBytes, 0, normalizedKey, 0, Math.min(keyBytes.length, 16));
 
             SecretKeySpec secretKey = new SecretKeySpec(normalizedKey, AES_ALGORITHM);
-
-            // Decrypt
-            Cipher cipher = Cipher.getInstance(AES_TRANSFORMATION);
+            cipher = Cipher.getInstance(AES_TRANSFORMATION);
             cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            byte[] decryptedBytes = cipher.doFinal(encryptedBytes);
-
-            return new String(decryptedBytes, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            log.error("AES decryption failed", e);
-            return null;
+            ciphers.put(key, cipher);
         }
+        return cipher;
     }
 
     /**
@@ -63,12 +170,12 @@ public class FingerprintUtil {
         try {
             // Decode Base64 first (matching frontend's btoa)
             String text = new String(Base64.getDecoder().decode(encrypted), StandardCharsets.UTF_8);
-            StringBuilder decrypted = new StringBuilder();
+            char[] decrypted = new char[text.length()];
+            int keyLength = key.length();
             
             // XOR decryption (matching frontend's aseEncrypt logic)
-            for (int i = 0; i < text.length(); i++) {
-                char charCode = (char) (text.charAt(i) ^ key.charAt(i % key.length()));
-                decrypted.append(charCode);
+            for (int i = 0; i < decrypted.length; i++) {
+                decrypted[i] = (char) (text.charAt(i) ^ key.charAt(i % keyLength));
             }
             
 //            log.debug("XOR decryption: encrypted={}, key={}, decrypted={}",
@@ -76,7 +183,7 @@ public class FingerprintUtil {
 //                     key.substring(0, Math.min(10, key.length())) + "...",
 //                     decrypted.toString());
             
-            return decrypted.toString();
+            return new String(decrypted);
         } catch (Exception e) {
             log.error("XOR decryption failed", e);
             return null;
@@ -102,21 +209,26 @@ public class FingerprintUtil {
 //                     fp, fp1.substring(0, Math.min(10, fp1.length())) + "...",
 //                     aesSecret.substring(0, Math.min(10, aesSecret.length())) + "...");
             
-            // Decrypt fp1 using XOR (matching frontend implementation)
-            String decryptedFp = xorDecrypt(fp1, aesSecret);
+            // Fast path: decode + XOR into a reusable buffer and compare with fp in place (no Strings)
+            int result = xorMatches(fp, fp1, aesSecret);
+            boolean isValid;
+            if (result == XOR_FALLBACK) {
+                // Non-ASCII or unusual input: decrypt fp1 using XOR (matching frontend implementation)
+                String decryptedFp = xorDecrypt(fp1, aesSecret);
+
+                if (decryptedFp == null) {
+                    log.warn("Failed to decrypt fp1");
+                    return false;
+                }
 
-            if (decryptedFp == null) {
-                log.warn("Failed to decrypt fp1");
-                return false;
+                // Compare decrypted fp1 with original fp
+                isValid = fp.equals(decryptedFp);
+            } else {
+                isValid = result == XOR_MATCH;
             }
 
-            // Compare decrypted fp1 with original fp
-            boolean isValid = fp.equals(decryptedFp);
             if (!isValid) {
-                log.warn("Fingerprint mismatch: fp={}, decrypted fp1={}", fp, decryptedFp);
-                log.warn("fp length: {}, decryptedFp length: {}", fp.length(), decryptedFp.length());
-            } else {
-//                log.debug("Fingerprint validation successful");
+                logMismatch(fp, fp1);
             }
 
             return isValid;
@@ -126,6 +238,80 @@ public class FingerprintUtil {
         }
     }
 
+    /**
+     * Check whether XOR-decrypting fp1 with the key yields fp, without building intermediate Strings
+     * Only handles ASCII plaintext (what the frontend sends); anything else returns XOR_FALLBACK so the caller
+     * can use {@link #xorDecrypt(String, String)} with identical semantics.
+     *
+     * @return XOR_MATCH, XOR_MISMATCH or XOR_FALLBACK
+     */
+    private static int xorMatches(String fp, String fp1, String key) {
+        int length = fp1.length();
+        while (length > 0 && fp1.charAt(length - 1) == '=') {
+            length--;
+        }
+        if (length % 4 == 1 || length > MAX_BUFFER_SIZE) {
+            return XOR_FALLBACK;
+        }
+
+        int decodedLength = length * 3 / 4;
+        byte[] buffer = DECODE_BUFFER.get();
+        if (buffer.length < decodedLength) {
+            buffer = new byte[Math.max(decodedLength, buffer.length * 2)];
+            DECODE_BUFFER.set(buffer);
+        }
+
+        // Base64 decode into the buffer
+        int bits = 0;
+        int bitCount = 0;
+        int position = 0;
+        for (int i = 0; i < length; i++) {
+            char c = fp1.charAt(i);
+            int value = c < 128 ? BASE64_VALUES[c] : -1;
+            if (value < 0) {
+                return XOR_FALLBACK;
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                byte b = (byte) (bits >> bitCount);
+                if (b < 0) {
+                    // 非 ASCII，UTF-8 多字节字符交给普通路径
+                    return XOR_FALLBACK;
+                }
+                buffer[position++] = b;
+            }
+        }
+
+        if (position != fp.length()) {
+            return XOR_MISMATCH;
+        }
+
+        // XOR with the key and compare with fp
+        int keyLength = key.length();
+        int diff = 0;
+        for (int i = 0; i < position; i++) {
+            diff |= fp.charAt(i) ^ (char) (buffer[i] ^ key.charAt(i % keyLength));
+        }
+        return diff == 0 ? XOR_MATCH : XOR_MISMATCH;
+    }
+
+    /**
+     * Log a fingerprint mismatch at most once per interval (guest traffic can produce many)
+     */
+    private static void logMismatch(String fp, String fp1) {
+        long now = System.nanoTime();
+        long next = nextMismatchLogAt.get();
+        if (now - next < 0 || !nextMismatchLogAt.compareAndSet(next, now + MISMATCH_LOG_INTERVAL_NANOS)) {
+            suppressedMismatches.incrementAndGet();
+            return;
+        }
+        long suppressed = suppressedMismatches.getAndSet(0);
+        log.warn("Fingerprint mismatch: fp={}, fp1 length={} ({} more mismatches in the last {}s)",
+            fp, fp1.length(), suppressed, TimeUnit.NANOSECONDS.toSeconds(MISMATCH_LOG_INTERVAL_NANOS));
+    }
+
     /**
      * Extract AES secret from x-guide header
      * The frontend now sends aesSecret directly as x-guide header
@@ -0,0 +1,122 @@
+package com.novelhub.utils;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * External Integration Guard
+ * Bulkhead (bounded concurrency) + circuit breaker per integration (replicate, imgbb, coingecko, binance-pay),
+ * so one slow or failing upstream cannot exhaust the Tomcat pool for unrelated endpoints.
+ * 配置项：resilience.{integration}.*，未配置时使用默认值
+ */
+@Slf4j
+@Component
+public class IntegrationGuard {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+
+    private final BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+
+    @PostConstruct
+    public void init() {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(registry);
+            TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(registry);
+        }
+    }
+
+    /**
+     * Execute an external call inside the integration's bulkhead and circuit breaker
+     * @param integration Integration name
+     * @param call External call
+     * @return Call result
+     * @throws IntegrationUnavailableException when the bulkhead is full or the circuit is open
+     */
+    public <T> T execute(String integration, Supplier<T> call) {
+        try {
+            return decorate(integration, call).get();
+        } catch (BulkheadFullException | CallNotPermittedException e) {
+            log.warn("Integration {} rejected call: {}", integration, e.getMessage());
+            throw new IntegrationUnavailableException(integration, e);
+        }
+    }
+
+    private <T> Supplier<T> decorate(String integration, Supplier<T> call) {
+        // 先过熔断器再占用舱壁：熔断打开时不占用并发名额
+        return CircuitBreaker.decorateSupplier(circuitBreaker(integration),
+            Bulkhead.decorateSupplier(bulkhead(integration), call));
+    }
+
+    private CircuitBreaker circuitBreaker(String integration) {
+        return circuitBreakerRegistry.circuitBreaker(integration, () -> CircuitBreakerConfig.custom()
+            .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+            .slidingWindowSize(property(integration, "sliding-window-size", 20))
+            .minimumNumberOfCalls(property(integration, "minimum-number-of-calls", 10))
+            .failureRateThreshold(property(integration, "failure-rate-threshold", 50))
+            .slowCallRateThreshold(property(integration, "slow-call-rate-threshold", 80))
+            .slowCallDurationThreshold(Duration.ofMillis(property(integration, "slow-call-duration-millis", 10000)))
+            .waitDurationInOpenState(Duration.ofMillis(property(integration, "wait-in-open-millis", 30000)))
+            .permittedNumberOfCallsInHalfOpenState(property(integration, "half-open-calls", 3))
+            .automaticTransitionFromOpenToHalfOpenEnabled(true)
+            // 4xx 是调用方问题（参数、鉴权），不代表上游故障；429 限流除外
+            .recordException(e -> !(e instanceof HttpClientErrorException)
+                || ((HttpClientErrorException) e).getStatusCode().value() == 429)
+            // 熔断器内部的舱壁拒绝不计入失败率
+            .ignoreExceptions(BulkheadFullException.class)
+            .build());
+    }
+
+    private Bulkhead bulkhead(String integration) {
+        return bulkheadRegistry.bulkhead(integration, () -> BulkheadConfig.custom()
+            .maxConcurrentCalls(property(integration, "max-concurrent-calls", 10))
+            .maxWaitDuration(Duration.ofMillis(property(integration, "max-wait-millis", 0)))
+            .build());
+    }
+
+    private int property(String integration, String name, int defaultValue) {
+        return environment.getProperty("resilience." + integration + "." + name, Integer.class, defaultValue);
+    }
+
+    /**
+     * Thrown when an integration refuses a call (bulkhead full or circuit open)
+     */
+    public static class IntegrationUnavailableException extends RuntimeException {
+
+        private final String integration;
+
+        public IntegrationUnavailableException(String integration, Throwable cause) {
+            super(integration + " is temporarily unavailable, please try again later", cause);
+            this.integration = integration;
+        }
+
+        public String getIntegration() {
+            return integration;
+        }
+    }
+}
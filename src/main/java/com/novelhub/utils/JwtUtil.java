@@ -1,8 +1,13 @@
 package com.novelhub.utils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,10 +16,14 @@ import org.springframework.stereotype.Component;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
+import java.util.AbstractMap;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT Utility for token generation and validation
@@ -32,6 +41,65 @@ public class JwtUtil {
     @Value("${jwt.expiration:604800}") // 7 days in seconds
     private long jwtExpiration;
 
+    // 已验证 token 的 claims 缓存（按 token 过期时间淘汰）
+    @Value("${jwt.claims-cache.max-size:10000}")
+    private long claimsCacheMaxSize;
+
+    @Value("${jwt.claims-cache.max-ttl-seconds:600}")
+    private long claimsCacheMaxTtlSeconds;
+
+    /**
+     * Claim carrying the user ID, so authenticated requests can identify the caller without a DB lookup
+     */
+    public static final String CLAIM_USER_ID = "uid";
+
+    /**
+     * Request attribute holding the claims parsed for the current request (parse at most once per request)
+     */
+    private static final String REQUEST_CLAIMS_ATTRIBUTE = JwtUtil.class.getName() + ".claims";
+
+    /**
+     * Marker stored in the request when the bearer token was missing or invalid
+     */
+    private static final Object INVALID_TOKEN = new Object();
+
+    // Built once: HMAC key and thread-safe parser
+    private SecretKey signingKey;
+
+    private JwtParser jwtParser;
+
+    private Cache<String, Claims> claimsCache;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+        claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String token, Claims claims, long currentTime) {
+                        // 不超过 token 自身的剩余有效期
+                        long untilExpiry = claims.getExpiration().getTime() - System.currentTimeMillis();
+                        long ttl = Math.min(untilExpiry, TimeUnit.SECONDS.toMillis(claimsCacheMaxTtlSeconds));
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttl));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     /**
      * Generate JWT token
      *
@@ -42,6 +110,35 @@ public class JwtUtil {
         return generateToken(username, new HashMap<>());
     }
 
+    /**
+     * Generate JWT token with the user ID claim
+     *
+     * @param username username
+     * @param userId user ID
+     * @return JWT token
+     */
+    public String generateToken(String username, Long userId) {
+        Map<String, Object> extraClaims = new HashMap<>();
+        if (userId != null) {
+            extraClaims.put(CLAIM_USER_ID, userId);
+        }
+        return generateToken(username, extraClaims);
+    }
+
+    /**
+     * Get user ID claim
+     *
+     * @param claims verified claims
+     * @return user ID, null for tokens minted without the claim
+     */
+    public Long getUserId(Claims claims) {
+        Object userId = claims.get(CLAIM_USER_ID);
+        if (userId instanceof Number) {
+            return ((Number) userId).longValue();
+        }
+        return null;
+    }
+
     /**
      * Generate JWT token with additional claims
      *
@@ -57,13 +154,11 @@ public class JwtUtil {
         claims.put("sub", username);
         claims.put("roles", List.of("ROLE_USER"));
 
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
         return Jwts.builder()
                 .setClaims(claims)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key)
+                .signWith(signingKey)
                 .compact();
     }
 
@@ -78,13 +173,11 @@ public class JwtUtil {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + refreshTokenExpiration * 1000);
 
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-
         return Jwts.builder()
                 .setSubject(username)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(key)
+                .signWith(signingKey)
                 .compact();
     }
 
@@ -100,26 +193,68 @@ public class JwtUtil {
 
     /**
      * Get claims from token
+     * Verified claims are cached until the token expires, so repeat requests skip HMAC and JSON decoding.
+     * The same instance is shared by concurrent requests, so it is read-only.
      *
      * @param token JWT token
-     * @return claims
+     * @return claims (read-only; setters and put throw UnsupportedOperationException)
      */
     public Claims getClaims(String token) {
-        SecretKey key = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
-        
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = claimsCache.getIfPresent(token);
+        boolean cached = claims != null;
+        if (!cached) {
+            claims = new ReadOnlyClaims(jwtParser.parseClaimsJws(token).getBody());
+        }
 
         // Check if token is expired
         Date expirationDate = claims.getExpiration();
-        if (expirationDate.before(new Date())) {
-            log.error("JWT token is expired");
+        if (expirationDate == null || expirationDate.before(new Date())) {
+            if (cached) {
+                claimsCache.invalidate(token);
+            }
+            log.debug("JWT token is expired");
             throw new RuntimeException("Expired JWT token");
         }
 
+        // 只缓存新解析的 claims，命中时不再写入（避免每次请求都写缓存）
+        if (!cached) {
+            claimsCache.put(token, claims);
+        }
+        return claims;
+    }
+
+    /**
+     * Get verified claims for the bearer token of the current request
+     * The token is parsed at most once per request; the result (or failure) is kept as a request attribute.
+     *
+     * @param request HttpServletRequest
+     * @return claims or null if the token is missing or invalid
+     */
+    public Claims getClaims(HttpServletRequest request) {
+        if (request == null) {
+            return null;
+        }
+
+        Object cached = request.getAttribute(REQUEST_CLAIMS_ATTRIBUTE);
+        if (cached != null) {
+            return cached == INVALID_TOKEN ? null : (Claims) cached;
+        }
+
+        Claims claims = null;
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ")) {
+            String token = authHeader.substring(7).trim();
+            if (!token.isEmpty()) {
+                try {
+                    claims = getClaims(token);
+                } catch (Exception e) {
+                    // 过期或伪造的 token 属于客户端问题，不按错误记录
+                    log.debug("Token validation failed: {}", e.getMessage());
+                }
+            }
+        }
+
+        request.setAttribute(REQUEST_CLAIMS_ATTRIBUTE, claims != null ? claims : INVALID_TOKEN);
         return claims;
     }
 
@@ -176,37 +311,18 @@ public class JwtUtil {
      * @return username or null if not available
      */
     public String getUsername(HttpServletRequest request) {
-        if (request == null) {
+        // Parsed at most once per request (validation + username extraction share one parse)
+        Claims claims = getClaims(request);
+        if (claims == null) {
             return null;
         }
 
-        String authHeader = request.getHeader("Authorization");
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
-            return null;
-        }
-
-        try {
-            String token = authHeader.substring(7).trim();
-            if (token.isEmpty()) {
-                return null;
-            }
-            
-            // Validate token first
-            if (!validateToken(token)) {
-                return null;
-            }
-            
-            String username = getUsername(token);
-            if (username == null || username.isEmpty()) {
-                return null;
-            }
-            
-            return username;
-        } catch (Exception e) {
-            // Log error but don't throw - just return null
-            log.debug("Failed to extract username from request: {}", e.getMessage());
+        String username = claims.getSubject();
+        if (username == null || username.isEmpty()) {
             return null;
         }
+        
+        return username;
     }
 
     /**
@@ -248,13 +364,14 @@ public class JwtUtil {
                 throw new RuntimeException("Authentication required: token is empty");
             }
             
-            // Validate token first
-            if (!validateToken(token)) {
+            // Validate token (parsed at most once per request)
+            Claims claims = getClaims(request);
+            if (claims == null) {
                 log.error("getCurrentUsername: Token validation failed");
                 throw new RuntimeException("Authentication required: token validation failed");
             }
             
-            String username = getUsername(token);
+            String username = claims.getSubject();
             if (username == null || username.isEmpty()) {
                 log.error("getCurrentUsername: Username extracted from token is null or empty");
                 throw new RuntimeException("Authentication required: username cannot be extracted from token");
@@ -270,5 +387,114 @@ public class JwtUtil {
         }
     }
 
-}
+    /**
+     * Read-only view of parsed claims, safe to share between requests through the claims cache
+     */
+    private static final class ReadOnlyClaims extends AbstractMap<String, Object> implements Claims {
+
+        private final Claims claims;
+
+        private final Set<Entry<String, Object>> entries;
+
+        private ReadOnlyClaims(Claims claims) {
+            this.claims = claims;
+            this.entries = Collections.unmodifiableMap(claims).entrySet();
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public Object get(Object key) {
+            return claims.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return claims.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return claims.size();
+        }
+
+        @Override
+        public <T> T get(String claimName, Class<T> requiredType) {
+            return claims.get(claimName, requiredType);
+        }
+
+        @Override
+        public String getIssuer() {
+            return claims.getIssuer();
+        }
+
+        @Override
+        public String getSubject() {
+            return claims.getSubject();
+        }
+
+        @Override
+        public String getAudience() {
+            return claims.getAudience();
+        }
+
+        // 日期每次返回新对象，调用方修改不会影响缓存
+        @Override
+        public Date getExpiration() {
+            return claims.getExpiration();
+        }
+
+        @Override
+        public Date getNotBefore() {
+            return claims.getNotBefore();
+        }
+
+        @Override
+        public Date getIssuedAt() {
+            return claims.getIssuedAt();
+        }
+
+        @Override
+        public String getId() {
+            return claims.getId();
+        }
 
+        @Override
+        public Claims setIssuer(String iss) {
+            throw new UnsupportedOperationException("Claims are read-only");
+        }
+
+        @Override
+        public Claims setSubject(String sub) {
+            throw new UnsupportedOperationException("Claims are read-only");
+        }
+
+        @Override
+        public Claims setAudience(String aud) {
+            throw new UnsupportedOperationException("Claims are read-only");
+        }
+
+        @Override
+        public Claims setExpiration(Date exp) {
+            throw new UnsupportedOperationException("Claims are read-only");
+        }
+
+        @Override
+        public Claims setNotBefore(Date nbf) {
+            throw new UnsupportedOperationException("Claims are read-only");
+        }
+
+        @Override
+        public Claims setIssuedAt(Date iat) {
+            throw new UnsupportedOperationException("Claims are read-only");
+        }
+
+        @Override
+        public Claims setId(String jti) {
+            throw new UnsupportedOperationException("Claims are read-only");
+        }
+    }
+}
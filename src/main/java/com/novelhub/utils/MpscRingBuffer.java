@@ -0,0 +1,96 @@
+package com.novelhub.utils;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer
+ * Producers claim a slot with one CAS on the tail and publish the element with an ordered write;
+ * {@link #offer} never blocks and returns false when the buffer is full.
+ * Only one thread may call {@link #drainTo} at a time.
+ */
+public class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    // 只由消费者线程推进，生产者读取以判断是否已满
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity Capacity, rounded up to a power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Add an element without blocking
+     * @param element Element (not null)
+     * @return false if the buffer is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long capacity = mask + 1L;
+        while (true) {
+            long t = tail.get();
+            if (t - head.get() >= capacity) {
+                return false;
+            }
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.lazySet((int) (t & mask), element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Move up to maxElements published elements into the target (consumer thread only)
+     * A slot claimed by a producer but not yet published ends the drain; it is picked up next time.
+     * @return Number of elements moved
+     */
+    public int drainTo(Collection<? super E> target, int maxElements) {
+        long h = head.get();
+        int count = 0;
+        while (count < maxElements) {
+            int index = (int) (h & mask);
+            E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            target.add(element);
+            h++;
+            count++;
+        }
+        if (count > 0) {
+            head.lazySet(h);
+        }
+        return count;
+    }
+
+    /**
+     * Approximate number of elements in the buffer
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -1,5 +1,16 @@
 package com.novelhub.utils;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKeyFactory;
@@ -8,66 +19,163 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Password Utility
  * Provides password encoding and validation using PBKDF2 (Java standard library)
  * No external dependencies required
+ *
+ * As a Spring bean, hashing runs on a small bounded executor instead of the request thread, so a login
+ * burst cannot pin every core; when the queue is full, or a queued hash has not started within the timeout,
+ * callers get {@link PasswordHashingBusyException} (HTTP 429). A hash that has started always runs to completion.
+ * Created with {@code new PasswordUtil()} it hashes inline with the default iteration count.
  */
+@Slf4j
 @Component
 public class PasswordUtil {
 
     // PBKDF2 参数配置
     private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
     private static final int SALT_LENGTH = 16; // 盐值长度（字节）
-    private static final int ITERATIONS = 100000; // 迭代次数
+    private static final int DEFAULT_ITERATIONS = 100000; // 默认迭代次数
     private static final int KEY_LENGTH = 256; // 密钥长度（位）
     private static final String DELIMITER = ":";
 
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // 新密码使用的迭代次数；旧哈希在登录成功后自动按新参数重新哈希
+    @Value("${password.hash.iterations:100000}")
+    private int iterations = DEFAULT_ITERATIONS;
+
+    // 0 = 可用 CPU 核数的一半
+    @Value("${password.hash.threads:0}")
+    private int threads;
+
+    @Value("${password.hash.queue-capacity:64}")
+    private int queueCapacity;
+
+    // 排队等待上限；已开始的哈希不受此限制
+    @Value("${password.hash.timeout-millis:5000}")
+    private long timeoutMillis;
+
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+
+    private ThreadPoolExecutor executor;
+
+    private Timer encodeTimer;
+
+    private Timer matchesTimer;
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hash-");
+        threadFactory.setDaemon(true);
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+        MeterRegistry registry = meterRegistry != null ? meterRegistry.getIfAvailable() : null;
+        if (registry != null) {
+            encodeTimer = Timer.builder("password.hash").tag("operation", "encode").register(registry);
+            matchesTimer = Timer.builder("password.hash").tag("operation", "matches").register(registry);
+            rejectedCounter = Counter.builder("password.hash.rejected").register(registry);
+            Gauge.builder("password.hash.queue.size", executor, e -> e.getQueue().size()).register(registry);
+            Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount).register(registry);
+        }
+        log.info("Password hashing: {} iterations, {} threads, queue {}", iterations, poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
     /**
      * Encode a plain text password
      * Format: salt:iterations:hash
-     * 
+     *
      * @param plainPassword Plain text password
      * @return Encoded password (base64 encoded salt:iterations:hash)
+     * @throws PasswordHashingBusyException when the hashing executor is saturated
      */
     public String encode(String plainPassword) {
         if (plainPassword == null || plainPassword.isEmpty()) {
             throw new IllegalArgumentException("Password cannot be null or empty");
         }
+        return execute(() -> doEncode(plainPassword), encodeTimer);
+    }
 
+    /**
+     * Check if a plain text password matches an encoded password
+     *
+     * @param plainPassword Plain text password
+     * @param encodedPassword Encoded password
+     * @return true if password matches, false otherwise
+     * @throws PasswordHashingBusyException when the hashing executor is saturated
+     */
+    public boolean matches(String plainPassword, String encodedPassword) {
+        if (plainPassword == null || encodedPassword == null) {
+            return false;
+        }
+        return execute(() -> doMatches(plainPassword, encodedPassword), matchesTimer);
+    }
+
+    /**
+     * Whether an encoded password was hashed with a different iteration count than the configured one
+     *
+     * @param encodedPassword Encoded password
+     * @return true if it should be re-encoded (after a successful match)
+     */
+    public boolean needsRehash(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        String[] parts = encodedPassword.split(DELIMITER);
+        if (parts.length != 3) {
+            return false;
+        }
+        try {
+            return Integer.parseInt(parts[1]) != iterations;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private String doEncode(String plainPassword) {
         try {
             // 生成随机盐值
-            SecureRandom random = new SecureRandom();
             byte[] salt = new byte[SALT_LENGTH];
-            random.nextBytes(salt);
+            RANDOM.nextBytes(salt);
 
             // 使用 PBKDF2 生成哈希
-            byte[] hash = generateHash(plainPassword, salt);
+            byte[] hash = generateHashWithIterations(plainPassword, salt, iterations);
 
             // 编码格式：salt:iterations:hash (都使用 Base64)
             String saltBase64 = Base64.getEncoder().encodeToString(salt);
             String hashBase64 = Base64.getEncoder().encodeToString(hash);
-            
-            return String.format("%s%s%d%s%s", 
-                saltBase64, DELIMITER, ITERATIONS, DELIMITER, hashBase64);
+
+            return saltBase64 + DELIMITER + iterations + DELIMITER + hashBase64;
         } catch (Exception e) {
             throw new RuntimeException("Failed to encode password", e);
         }
     }
 
-    /**
-     * Check if a plain text password matches an encoded password
-     * 
-     * @param plainPassword Plain text password
-     * @param encodedPassword Encoded password
-     * @return true if password matches, false otherwise
-     */
-    public boolean matches(String plainPassword, String encodedPassword) {
-        if (plainPassword == null || encodedPassword == null) {
-            return false;
-        }
-
+    private boolean doMatches(String plainPassword, String encodedPassword) {
         try {
             // 解析编码的密码：salt:iterations:hash
             String[] parts = encodedPassword.split(DELIMITER);
@@ -76,11 +184,11 @@ public class PasswordUtil {
             }
 
             byte[] salt = Base64.getDecoder().decode(parts[0]);
-            int iterations = Integer.parseInt(parts[1]);
+            int storedIterations = Integer.parseInt(parts[1]);
             byte[] storedHash = Base64.getDecoder().decode(parts[2]);
 
             // 使用相同的盐值和迭代次数生成哈希
-            byte[] computedHash = generateHashWithIterations(plainPassword, salt, iterations);
+            byte[] computedHash = generateHashWithIterations(plainPassword, salt, storedIterations);
 
             // 使用常量时间比较防止时序攻击
             return constantTimeEquals(computedHash, storedHash);
@@ -90,11 +198,70 @@ public class PasswordUtil {
     }
 
     /**
-     * 使用 PBKDF2 生成哈希（默认迭代次数）
+     * Run a hashing task on the bounded executor (inline when not managed by Spring)
+     * The timeout only bounds the wait in the queue: PBKDF2 does not check for interrupts, so a hash that has
+     * started is allowed to finish (its cost is bounded by the iteration count) instead of being abandoned
+     * while it keeps burning CPU.
      */
-    private byte[] generateHash(String password, byte[] salt) 
-            throws NoSuchAlgorithmException, InvalidKeySpecException {
-        return generateHashWithIterations(password, salt, ITERATIONS);
+    private <T> T execute(Callable<T> task, Timer timer) {
+        if (executor == null) {
+            return call(task);
+        }
+
+        // 调用方和工作线程抢占同一个标记：工作线程先拿到则执行，调用方先拿到则任务永不执行
+        AtomicBoolean claimed = new AtomicBoolean();
+        Callable<T> timed = timer != null ? () -> timer.recordCallable(task) : task;
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) {
+                    throw new CancellationException();
+                }
+                return timed.call();
+            });
+        } catch (RejectedExecutionException e) {
+            if (rejectedCounter != null) {
+                rejectedCounter.increment();
+            }
+            throw new PasswordHashingBusyException();
+        }
+
+        try {
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (claimed.compareAndSet(false, true)) {
+                    // Still queued: drop it without running
+                    future.cancel(false);
+                    if (rejectedCounter != null) {
+                        rejectedCounter.increment();
+                    }
+                    throw new PasswordHashingBusyException();
+                }
+                return future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (claimed.compareAndSet(false, true)) {
+                future.cancel(false);
+            }
+            throw new PasswordHashingBusyException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Password hashing failed", e);
+        }
     }
 
     /**
@@ -103,8 +270,12 @@ public class PasswordUtil {
     private byte[] generateHashWithIterations(String password, byte[] salt, int iterations)
             throws NoSuchAlgorithmException, InvalidKeySpecException {
         PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_LENGTH);
-        SecretKeyFactory factory = SecretKeyFactory.getInstance(ALGORITHM);
-        return factory.generateSecret(spec).getEncoded();
+        try {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(ALGORITHM);
+            return factory.generateSecret(spec).getEncoded();
+        } finally {
+            spec.clearPassword();
+        }
     }
 
     /**
@@ -114,12 +285,21 @@ public class PasswordUtil {
         if (a.length != b.length) {
             return false;
         }
-        
+
         int result = 0;
         for (int i = 0; i < a.length; i++) {
             result |= a[i] ^ b[i];
         }
         return result == 0;
     }
-}
 
+    /**
+     * Thrown when the password hashing executor is saturated (mapped to HTTP 429)
+     */
+    public static class PasswordHashingBusyException extends RuntimeException {
+
+        public PasswordHashingBusyException() {
+            super("Too many requests, please try again later");
+        }
+    }
+}
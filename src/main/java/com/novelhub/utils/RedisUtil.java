@@ -3,6 +3,9 @@ package com.novelhub.utils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
@@ -11,6 +14,7 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -29,6 +33,26 @@ public class RedisUtil {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
+    /**
+     * Check limit, increment and expire in one round-trip
+     * KEYS[1] = counter key, ARGV[1] = limit, ARGV[2] = expire seconds
+     * Returns {allowed (1/0), count}
+     */
+    private static final String INCREMENT_WITH_LIMIT_SCRIPT =
+        "local current = tonumber(redis.call('GET', KEYS[1]) or '0') " +
+        "if current >= tonumber(ARGV[1]) then " +
+        "  return {0, current} " +
+        "end " +
+        "local count = redis.call('INCR', KEYS[1]) " +
+        "if count == 1 or redis.call('TTL', KEYS[1]) == -1 then " +
+        "  redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2])) " +
+        "end " +
+        "return {1, count}";
+
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> INCREMENT_WITH_LIMIT =
+        new DefaultRedisScript<>(INCREMENT_WITH_LIMIT_SCRIPT, List.class);
+
     // ========== Common Operations ==========
 
     /**
@@ -62,6 +86,23 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * Set key-value with expiration only if the key does not exist (SET NX EX)
+     * @param key Key
+     * @param value Value
+     * @param timeout Timeout value
+     * @param unit Time unit
+     * @return true if the value was set
+     */
+    public boolean setIfAbsent(String key, Object value, long timeout, TimeUnit unit) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, value, timeout, unit));
+        } catch (Exception e) {
+            log.error("Redis setIfAbsent error - key: {}, error: {}", key, e.getMessage(), e);
+            throw new RuntimeException("Redis setIfAbsent operation failed", e);
+        }
+    }
+
     /**
      * Set key-value with expiration at end of day (midnight)
      * @param key Key
@@ -265,6 +306,32 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * Atomically increment a daily counter only if it is below the limit (expires at midnight)
+     * Check, INCR and EXPIRE run server-side in a single Lua script, so concurrent callers cannot overshoot the limit.
+     * @param key Key
+     * @param limit Maximum value
+     * @return long[]{allowed (1/0), count after the call}
+     */
+    public long[] incrementWithLimitUntilMidnight(String key, long limit) {
+        try {
+            // 参数按纯字符串序列化（值序列化器是 JSON，不适用于 Lua 参数）
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            List<?> result = redisTemplate.execute(INCREMENT_WITH_LIMIT,
+                    RedisSerializer.string(), (RedisSerializer) RedisSerializer.string(),
+                    Collections.singletonList(key),
+                    String.valueOf(limit), String.valueOf(Math.max(1, getSecondsUntilMidnight())));
+            if (result == null || result.size() < 2) {
+                throw new IllegalStateException("Unexpected script result: " + result);
+            }
+            return new long[]{((Number) result.get(0)).longValue(), ((Number) result.get(1)).longValue()};
+        } catch (Exception e) {
+            log.error("Redis increment with limit error - key: {}, limit: {}, error: {}", 
+                    key, limit, e.getMessage(), e);
+            throw new RuntimeException("Redis increment with limit operation failed", e);
+        }
+    }
+
     /**
      * Decrement value by 1
      * @param key Key
@@ -497,6 +564,48 @@ public class RedisUtil {
         }
     }
 
+    // ========== Script Operations ==========
+
+    /**
+     * Execute a Lua script
+     * Keys, arguments and string results use plain string serialization, so values written by the script
+     * (HSET/RPUSH) are raw strings rather than JSON.
+     * @param script Script
+     * @param keys KEYS
+     * @param args ARGV (converted with String.valueOf)
+     * @return Script result
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        Object[] stringArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            stringArgs[i] = String.valueOf(args[i]);
+        }
+        try {
+            return (T) redisTemplate.execute(script, RedisSerializer.string(), (RedisSerializer) RedisSerializer.string(),
+                    keys, stringArgs);
+        } catch (Exception e) {
+            log.error("Redis script error - keys: {}, error: {}", keys, e.getMessage(), e);
+            throw new RuntimeException("Redis script execution failed", e);
+        }
+    }
+
+    // ========== Pub/Sub Operations ==========
+
+    /**
+     * Publish message to channel
+     * @param channel Channel name
+     * @param message Message (serialized with the value serializer)
+     */
+    public void publish(String channel, Object message) {
+        try {
+            redisTemplate.convertAndSend(channel, message);
+        } catch (Exception e) {
+            log.error("Redis publish error - channel: {}, error: {}", channel, e.getMessage(), e);
+            throw new RuntimeException("Redis publish operation failed", e);
+        }
+    }
+
     // ========== Utility Methods ==========
 
     /**
@@ -0,0 +1,24 @@
+package com.novelhub.vo.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Authenticated User
+ * Caller identity resolved from the JWT (see {@link com.novelhub.annotation.CurrentUser})
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthenticatedUser {
+    /**
+     * User ID
+     */
+    private Long userId;
+
+    /**
+     * Username (token subject)
+     */
+    private String username;
+}
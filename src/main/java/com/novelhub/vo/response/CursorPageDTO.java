@@ -0,0 +1,32 @@
+package com.novelhub.vo.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页结果DTO（keyset 分页，每页成本与页深无关）
+ */
+@Data
+public class CursorPageDTO<T> {
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records;
+
+    /**
+     * 下一页游标（不透明字符串，没有下一页时为 null）
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private Boolean hasNext;
+
+    /**
+     * 总记录数（仅在请求时统计，否则为 null）
+     */
+    private Long total;
+}
@@ -129,9 +129,11 @@ CREATE TABLE `tb_point_detail` (
     `task_id` VARCHAR(64) NOT NULL COMMENT '任务id',
     `is_api` INT NOT NULL DEFAULT 0 COMMENT '是否通过api消耗的积分， 0-否，1-是',
     `extra_data` VARCHAR(255) NOT NULL DEFAULT '' COMMENT '原因',
+    `ledger_id` VARCHAR(36) DEFAULT NULL COMMENT 'Redis 账本条目ID（重放去重）',
     `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     PRIMARY KEY (`point_detail_id`),
+    UNIQUE KEY `uk_ledger_id` (`ledger_id`),
     KEY `idx_user_id` (`user_id`),
     KEY `idx_task_id` (`task_id`),
     KEY `idx_created_at` (`created_at`),
@@ -140,6 +142,27 @@ CREATE TABLE `tb_point_detail` (
     KEY `idx_points_type` (`points_type`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='积分明细表';
 
+-- 积分日汇总表（写入积分明细时在同一事务内增量累加，汇总查询无需扫描明细）
+CREATE TABLE `tb_point_daily_rollup` (
+    `rollup_id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '汇总ID',
+    `user_id` BIGINT NOT NULL COMMENT '用户ID',
+    `stat_date` DATE NOT NULL COMMENT '统计日期',
+    `type` INT NOT NULL DEFAULT 0 COMMENT '0-消耗积分，1-增加积分',
+    `func_type` INT NOT NULL DEFAULT 0 COMMENT '功能类型',
+    `points_type` INT NOT NULL DEFAULT 1 COMMENT '积分类型',
+    `total_points` BIGINT NOT NULL DEFAULT 0 COMMENT '积分合计',
+    `tx_count` INT NOT NULL DEFAULT 0 COMMENT '明细条数',
+    `created_at` DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `updated_at` DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (`rollup_id`),
+    UNIQUE KEY `uk_user_date_type` (`user_id`, `stat_date`, `type`, `func_type`, `points_type`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='积分日汇总表';
+
+-- 已有明细的一次性回填：
+-- INSERT INTO tb_point_daily_rollup (user_id, stat_date, type, func_type, points_type, total_points, tx_count)
+-- SELECT user_id, DATE(created_at), type, func_type, points_type, SUM(points), COUNT(*)
+-- FROM tb_point_detail GROUP BY user_id, DATE(created_at), type, func_type, points_type;
+
 -- ============================================
 -- 支付相关表
 -- ============================================
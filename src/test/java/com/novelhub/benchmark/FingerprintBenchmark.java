@@ -0,0 +1,86 @@
+package com.novelhub.benchmark;
+
+import com.novelhub.utils.FingerprintUtil;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FingerprintUtil 基准测试：请求头校验、XOR 解密、AES 解密
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FingerprintBenchmark {
+
+    private static final String FINGERPRINT = "3f6c1a9d2b7e4c8f0a5d6e7b8c9d0e1f";
+
+    private static final String SECRET = "k9PzQ2mX7vL4tR8w";
+
+    private MockHttpServletRequest request;
+
+    private String xorEncrypted;
+
+    private String aesEncrypted;
+
+    private List<String> aesBatch;
+
+    @Setup
+    public void setup() throws Exception {
+        // 与前端 aseEncrypt 相同：逐字符 XOR 后 Base64
+        StringBuilder xored = new StringBuilder();
+        for (int i = 0; i < FINGERPRINT.length(); i++) {
+            xored.append((char) (FINGERPRINT.charAt(i) ^ SECRET.charAt(i % SECRET.length())));
+        }
+        xorEncrypted = Base64.getEncoder().encodeToString(xored.toString().getBytes(StandardCharsets.UTF_8));
+
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "AES"));
+        aesEncrypted = Base64.getEncoder().encodeToString(cipher.doFinal(FINGERPRINT.getBytes(StandardCharsets.UTF_8)));
+        aesBatch = Collections.nCopies(16, aesEncrypted);
+
+        request = new MockHttpServletRequest();
+        request.addHeader("fp", FINGERPRINT);
+        request.addHeader("fp1", xorEncrypted);
+        request.addHeader("x-guide", SECRET);
+        if (!FINGERPRINT.equals(FingerprintUtil.extractAndValidateFingerprint(request))) {
+            throw new IllegalStateException("Benchmark fingerprint headers do not validate");
+        }
+    }
+
+    @Benchmark
+    public String extractAndValidateFingerprint() {
+        return FingerprintUtil.extractAndValidateFingerprint(request);
+    }
+
+    @Benchmark
+    public boolean validateFingerprint() {
+        return FingerprintUtil.validateFingerprint(FINGERPRINT, xorEncrypted, SECRET);
+    }
+
+    @Benchmark
+    public String xorDecrypt() {
+        return FingerprintUtil.xorDecrypt(xorEncrypted, SECRET);
+    }
+
+    @Benchmark
+    public String aesDecrypt() {
+        return FingerprintUtil.aesDecrypt(aesEncrypted, SECRET);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public List<String> aesDecryptAll() {
+        return FingerprintUtil.aesDecryptAll(aesBatch, SECRET);
+    }
+}
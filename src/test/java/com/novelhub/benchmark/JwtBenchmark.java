@@ -0,0 +1,55 @@
+package com.novelhub.benchmark;
+
+import com.novelhub.utils.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtUtil 基准测试：签发、验证（claims 缓存命中）以及签发后首次验证（缓存未命中）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtUtil jwtUtil;
+
+    private String token;
+
+    private long sequence;
+
+    @Setup
+    public void setup() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "jwtSecret", "aBcDeFgHiJkLmNoPqRsTuVwXyZaBcDeFgHiJkLmNoPaBcDeFgHiJkLs");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", 604800L);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxSize", 10000L);
+        ReflectionTestUtils.setField(jwtUtil, "claimsCacheMaxTtlSeconds", 600L);
+        jwtUtil.init();
+        token = jwtUtil.generateToken("benchmark_user", 10001L);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("benchmark_user", 10001L);
+    }
+
+    @Benchmark
+    public Claims getClaimsCached() {
+        return jwtUtil.getClaims(token);
+    }
+
+    @Benchmark
+    public Claims generateAndGetClaims() {
+        // 每次生成不同的 token，走完整的签名校验和解析路径
+        String fresh = jwtUtil.generateToken("benchmark_user", Map.of("n", sequence++));
+        return jwtUtil.getClaims(fresh);
+    }
+}
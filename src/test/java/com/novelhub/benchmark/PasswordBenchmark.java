@@ -0,0 +1,42 @@
+package com.novelhub.benchmark;
+
+import com.novelhub.utils.PasswordUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PasswordUtil 基准测试（PBKDF2，默认迭代次数，调用线程内直接计算）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordBenchmark {
+
+    private final PasswordUtil passwordUtil = new PasswordUtil();
+
+    private String encoded;
+
+    @Setup
+    public void setup() {
+        encoded = passwordUtil.encode("password123");
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordUtil.encode("password123");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordUtil.matches("password123", encoded);
+    }
+
+    @Benchmark
+    public boolean matchesWrongPassword() {
+        return passwordUtil.matches("wrongpassword", encoded);
+    }
+}
@@ -0,0 +1,189 @@
+package com.novelhub.mapper;
+
+import com.novelhub.utils.LocalMysql;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * UserPointMapper.debit 的 SQL 测试（需要本地 MySQL，不可达时跳过）：
+ * 免费 -> 订阅 -> 固定 拆分、LAST_INSERT_ID 带回的积分类型与剩余总额、余额不足不命中、并发扣减不透支
+ */
+public class UserPointMapperDebitTest {
+
+    private static final Pattern PARAM = Pattern.compile("#\\{(\\w+)}");
+
+    private LocalMysql mysql;
+
+    private long userId;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        mysql = LocalMysql.connectOrSkip();
+        userId = ThreadLocalRandom.current().nextLong(1_000_000_000L, Long.MAX_VALUE);
+        try (Connection connection = mysql.connection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS tb_user_points (" +
+                "user_points_id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, user_id BIGINT NOT NULL UNIQUE, " +
+                "points INT NOT NULL DEFAULT 0, fixed_points INT NOT NULL DEFAULT 0, sub_points INT NOT NULL DEFAULT 0, " +
+                "sub_points_left INT NOT NULL DEFAULT 0, free_points INT NOT NULL DEFAULT 0, " +
+                "updated_at DATETIME DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (mysql != null) {
+            try (Connection connection = mysql.connection();
+                 PreparedStatement statement = connection.prepareStatement("DELETE FROM tb_user_points WHERE user_id = ?")) {
+                statement.setLong(1, userId);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    @Test
+    public void debitSplitsFreeThenSubThenFixed() throws Exception {
+        insert(10, 20, 30);
+
+        // 结果 = 扣减后总余额 * 4 + 积分类型（0-免费 2-订阅 1-固定）
+        assertEquals(55L * 4 + 0, debit(5));
+        assertArrayEquals(new int[]{5, 20, 30}, balance());
+        assertEquals(35L * 4 + 2, debit(20));
+        assertArrayEquals(new int[]{0, 5, 30}, balance());
+        assertEquals(5L * 4 + 1, debit(30));
+        assertArrayEquals(new int[]{0, 0, 5}, balance());
+    }
+
+    @Test
+    public void insufficientBalanceDoesNotMatch() throws Exception {
+        insert(1, 2, 3);
+
+        assertNull(debit(7));
+        assertArrayEquals(new int[]{1, 2, 3}, balance());
+
+        // 恰好用完全部余额
+        assertEquals(0L * 4 + 1, debit(6));
+        assertArrayEquals(new int[]{0, 0, 0}, balance());
+    }
+
+    @Test
+    public void concurrentDebitsNeverOverdraw() throws Exception {
+        insert(10, 20, 70);
+
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            Callable<Long> consume = () -> {
+                start.await();
+                return debit(30);
+            };
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(consume));
+            }
+            start.countDown();
+
+            Set<Long> remaining = new HashSet<>();
+            for (Future<Long> result : results) {
+                Long packed = result.get();
+                if (packed != null) {
+                    remaining.add(packed / 4);
+                }
+            }
+
+            // 100 分每次扣 30：恰好 3 次命中，每次读到的剩余总额各不相同
+            assertEquals(Set.of(70L, 40L, 10L), remaining);
+            assertArrayEquals(new int[]{0, 0, 10}, balance());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void insert(int free, int subLeft, int fixed) throws SQLException {
+        try (Connection connection = mysql.connection();
+             PreparedStatement statement = connection.prepareStatement("INSERT INTO tb_user_points " +
+                 "(user_id, free_points, sub_points_left, sub_points, points, fixed_points) VALUES (?, ?, ?, ?, ?, ?)")) {
+            statement.setLong(1, userId);
+            statement.setInt(2, free);
+            statement.setInt(3, subLeft);
+            statement.setInt(4, subLeft);
+            statement.setInt(5, fixed);
+            statement.setInt(6, fixed);
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * 在一个事务内执行映射器上的 debit 语句和 selectDebitResult（与分组事务一致）
+     * @return 未命中时为 null
+     */
+    private Long debit(int amount) throws Exception {
+        String sql = UserPointMapper.class.getMethod("debit", Long.class, int.class).getAnnotation(Update.class).value()[0];
+        List<String> names = new ArrayList<>();
+        Matcher matcher = PARAM.matcher(sql);
+        while (matcher.find()) {
+            names.add(matcher.group(1));
+        }
+
+        try (Connection connection = mysql.connection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(PARAM.matcher(sql).replaceAll("?"))) {
+                for (int i = 0; i < names.size(); i++) {
+                    statement.setLong(i + 1, "userId".equals(names.get(i)) ? userId : amount);
+                }
+                if (statement.executeUpdate() != 1) {
+                    connection.rollback();
+                    return null;
+                }
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                     UserPointMapper.class.getMethod("selectDebitResult").getAnnotation(Select.class).value()[0])) {
+                rs.next();
+                long packed = rs.getLong(1);
+                connection.commit();
+                return packed;
+            }
+        }
+    }
+
+    /**
+     * @return free_points, sub_points_left, points
+     */
+    private int[] balance() throws SQLException {
+        try (Connection connection = mysql.connection();
+             PreparedStatement statement = connection.prepareStatement(
+                 "SELECT free_points, sub_points_left, points FROM tb_user_points WHERE user_id = ?")) {
+            statement.setLong(1, userId);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3)};
+            }
+        }
+    }
+}
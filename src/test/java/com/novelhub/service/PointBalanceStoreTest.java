@@ -0,0 +1,151 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.novelhub.entity.PointDetail;
+import com.novelhub.entity.UserPoint;
+import com.novelhub.utils.LocalRedis;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * PointBalanceStore Lua 脚本测试（需要本地 Redis，不可达时跳过）：
+ * 扣减按 免费 -> 订阅 -> 固定 拆分、余额不足时不改余额也不写账本、按订单号幂等入账
+ */
+public class PointBalanceStoreTest {
+
+    private LocalRedis redis;
+
+    private StringRedisTemplate strings;
+
+    private PointBalanceStore store;
+
+    private Long userId;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        redis = LocalRedis.connectOrSkip();
+        strings = new StringRedisTemplate(redis.redisTemplate().getConnectionFactory());
+        store = new PointBalanceStore();
+        ReflectionTestUtils.setField(store, "redisUtil", redis.redisUtil());
+        ReflectionTestUtils.setField(store, "ttlDays", 1L);
+        userId = ThreadLocalRandom.current().nextLong(1_000_000_000L, Long.MAX_VALUE);
+        // 测试库中的账本只属于本测试
+        strings.delete(PointLedgerWriter.LEDGER_KEY);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (redis != null) {
+            strings.delete(strings.keys("points:*" + userId + "*"));
+            strings.delete(PointLedgerWriter.LEDGER_KEY);
+            redis.close();
+        }
+    }
+
+    @Test
+    public void debitSplitsFreeThenSubThenFixed() {
+        Function<Long, UserPoint> loader = loader(10, 20, 30);
+
+        // 只用免费积分
+        assertArrayEquals(new long[]{1, 0, 55}, store.debit(userId, 5, detail(5), loader));
+        // 免费用完后进入订阅积分
+        assertArrayEquals(new long[]{1, 2, 35}, store.debit(userId, 20, detail(20), loader));
+        // 订阅用完后进入固定积分
+        assertArrayEquals(new long[]{1, 1, 5}, store.debit(userId, 30, detail(30), loader));
+        assertEquals(1, loads.get());
+
+        UserPoint balance = store.getBalance(userId);
+        assertEquals(0, balance.getFreePoints());
+        assertEquals(0, balance.getSubPointsLeft());
+        assertEquals(5, balance.getPoints());
+        // 总量列不随扣减变化
+        assertEquals(30, balance.getFixedPoints());
+        assertEquals(20, balance.getSubPoints());
+
+        List<String> ledger = strings.opsForList().range(PointLedgerWriter.LEDGER_KEY, 0, -1);
+        assertEquals(3, ledger.size());
+        assertEquals(0, JSON.parseObject(ledger.get(0)).getIntValue("pointsType"));
+        assertEquals(2, JSON.parseObject(ledger.get(1)).getIntValue("pointsType"));
+        JSONObject last = JSON.parseObject(ledger.get(2));
+        assertEquals(1, last.getIntValue("pointsType"));
+        // 余额快照：points, fixed_points, sub_points, sub_points_left, free_points
+        assertEquals(List.of(5, 30, 20, 0, 0), last.getList("balance", Integer.class));
+
+        // 每个条目带不同的账本ID，写入方按它去重
+        Set<String> ledgerIds = new HashSet<>();
+        for (String entry : ledger) {
+            ledgerIds.add(JSON.parseObject(JSON.parseObject(entry).getString("detail"), PointDetail.class).getLedgerId());
+        }
+        assertEquals(3, ledgerIds.size());
+        assertFalse(ledgerIds.contains(null));
+    }
+
+    @Test
+    public void insufficientBalanceChangesNothing() {
+        Function<Long, UserPoint> loader = loader(1, 2, 3);
+
+        assertArrayEquals(new long[]{0, 0, 6}, store.debit(userId, 7, detail(7), loader));
+
+        UserPoint balance = store.getBalance(userId);
+        assertEquals(1, balance.getFreePoints());
+        assertEquals(2, balance.getSubPointsLeft());
+        assertEquals(3, balance.getPoints());
+        assertEquals(0L, strings.opsForList().size(PointLedgerWriter.LEDGER_KEY));
+
+        // 恰好用完全部余额
+        assertArrayEquals(new long[]{1, 1, 0}, store.debit(userId, 6, detail(6), loader));
+    }
+
+    @Test
+    public void creditWithSameOrderNumberAppliesOnce() {
+        Function<Long, UserPoint> loader = loader(0, 0, 0);
+        UserPoint delta = UserPoint.builder().points(100).fixedPoints(100).build();
+
+        assertArrayEquals(new long[]{1, 100}, store.credit(userId, delta, detail(100), "order-1", loader));
+        // 回滚后重投的 webhook 不再入账
+        assertArrayEquals(new long[]{0, 100}, store.credit(userId, delta, detail(100), "order-1", loader));
+        assertArrayEquals(new long[]{1, 200}, store.credit(userId, delta, detail(100), "order-2", loader));
+
+        assertEquals(200, store.getBalance(userId).getPoints());
+        assertEquals(2L, strings.opsForList().size(PointLedgerWriter.LEDGER_KEY));
+    }
+
+    private Function<Long, UserPoint> loader(int free, int subLeft, int fixed) {
+        return id -> {
+            loads.incrementAndGet();
+            return UserPoint.builder()
+                .userId(id)
+                .freePoints(free)
+                .subPointsLeft(subLeft)
+                .subPoints(subLeft)
+                .points(fixed)
+                .fixedPoints(fixed)
+                .build();
+        };
+    }
+
+    private PointDetail detail(int points) {
+        return PointDetail.builder()
+            .userId(userId)
+            .points(points)
+            .type(0)
+            .build();
+    }
+}
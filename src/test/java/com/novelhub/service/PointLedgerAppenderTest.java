@@ -0,0 +1,176 @@
+package com.novelhub.service;
+
+import com.novelhub.entity.PointDetail;
+import com.novelhub.mapper.PointDetailMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PointLedgerAppender 测试：超时取消、整组失败后逐条重试、组事务使用 REQUIRES_NEW
+ */
+public class PointLedgerAppenderTest {
+
+    private static final long BAD_USER_ID = 13L;
+
+    private final PointDetailMapper pointDetailMapper = mock(PointDetailMapper.class);
+
+    private final PointRollupService pointRollupService = mock(PointRollupService.class);
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    // 调用方会阻塞等待组提交，不使用公共 ForkJoinPool
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    private PointLedgerAppender appender;
+
+    @SuppressWarnings("unchecked")
+    private PointLedgerAppender newAppender(int batchSize, long maxDelayMillis, long timeoutMillis) {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        ObjectProvider<MeterRegistry> meterRegistry = mock(ObjectProvider.class);
+
+        PointLedgerAppender appender = new PointLedgerAppender();
+        ReflectionTestUtils.setField(appender, "batchSize", batchSize);
+        ReflectionTestUtils.setField(appender, "maxDelayMillis", maxDelayMillis);
+        ReflectionTestUtils.setField(appender, "queueCapacity", 100);
+        ReflectionTestUtils.setField(appender, "timeoutMillis", timeoutMillis);
+        ReflectionTestUtils.setField(appender, "pointDetailMapper", pointDetailMapper);
+        ReflectionTestUtils.setField(appender, "pointRollupService", pointRollupService);
+        ReflectionTestUtils.setField(appender, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(appender, "meterRegistry", meterRegistry);
+        appender.init();
+        this.appender = appender;
+        return appender;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        callers.shutdownNow();
+        if (appender != null) {
+            appender.shutdown();
+        }
+    }
+
+    @Test
+    public void groupCommitRunsInItsOwnTransaction() throws Exception {
+        newAppender(10, 50, 5000);
+
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (long userId = 1; userId <= 5; userId++) {
+            PointDetail detail = detail(userId);
+            results.add(CompletableFuture.supplyAsync(() -> appender.append(detail, () -> true), callers));
+        }
+        for (CompletableFuture<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+
+        verify(transactionManager, atLeastOnce()).getTransaction(argThat(definition ->
+            definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+        verify(pointDetailMapper, atLeastOnce()).insertBatch(any());
+    }
+
+    @Test
+    public void conditionalUpdateMissIsNotInserted() {
+        newAppender(10, 0, 5000);
+
+        assertFalse(appender.append(detail(1L), () -> false));
+        verify(pointDetailMapper, never()).insertBatch(any());
+    }
+
+    @Test
+    public void failedGroupFallsBackToOneByOne() throws Exception {
+        // 等待足够久，保证三个请求进入同一组
+        newAppender(3, 1000, 5000);
+        doThrow(new RuntimeException("Duplicate entry"))
+            .when(pointDetailMapper).insertBatch(argThat(details ->
+                details.stream().anyMatch(d -> d.getUserId() == BAD_USER_ID)));
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> appender.append(detail(1L), () -> true), callers);
+        CompletableFuture<Boolean> bad = CompletableFuture.supplyAsync(() -> appender.append(detail(BAD_USER_ID), () -> true), callers);
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> appender.append(detail(2L), () -> true), callers);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        Exception error = assertThrows(Exception.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause().getMessage().contains("Duplicate entry"));
+
+        // 整组一次 + 逐条三次
+        verify(pointDetailMapper, atLeastOnce()).insertBatch(argThat(details -> details.size() == 3));
+        verify(pointDetailMapper).insertBatch(argThat(details ->
+            details.size() == 1 && details.get(0).getUserId() == 1L));
+        verify(pointDetailMapper).insertBatch(argThat(details ->
+            details.size() == 1 && details.get(0).getUserId() == 2L));
+    }
+
+    @Test
+    public void queuedRequestIsCancelledOnTimeoutAndNeverApplied() throws Exception {
+        newAppender(1, 0, 200);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean cancelledApplied = new AtomicBoolean();
+
+        // 第一个请求占住提交线程，超过超时时间
+        CompletableFuture<Boolean> blocking = CompletableFuture.supplyAsync(() -> appender.append(detail(1L), () -> {
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }), callers);
+        Thread.sleep(50);
+
+        // 第二个请求仍在队列中，超时后被取消
+        RuntimeException timeout = assertThrows(RuntimeException.class,
+            () -> appender.append(detail(2L), () -> {
+                cancelledApplied.set(true);
+                return true;
+            }));
+        assertEquals("Point ledger commit timed out", timeout.getMessage());
+
+        // 已被提交线程取走的请求不取消，调用方等到结果
+        release.countDown();
+        assertTrue(blocking.get(5, TimeUnit.SECONDS));
+
+        // 之后的请求照常提交，被取消的请求不会执行
+        assertTrue(appender.append(detail(3L), () -> true));
+        assertFalse(cancelledApplied.get());
+        verify(pointDetailMapper, never()).insertBatch(argThat(details ->
+            details.stream().anyMatch(d -> d.getUserId() == 2L)));
+    }
+
+    private PointDetail detail(Long userId) {
+        return PointDetail.builder()
+            .userId(userId)
+            .points(10)
+            .type(0)
+            .pointsType(0)
+            .build();
+    }
+}
@@ -0,0 +1,109 @@
+package com.novelhub.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.novelhub.entity.PointDetail;
+import com.novelhub.mapper.PointDetailMapper;
+import com.novelhub.mapper.UserPointMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PointLedgerWriter 写入测试：重新领取的已写入条目不再插入也不再汇总、并发写入时整批回滚
+ */
+public class PointLedgerWriterTest {
+
+    private final PointDetailMapper pointDetailMapper = mock(PointDetailMapper.class);
+
+    private final PointRollupService pointRollupService = mock(PointRollupService.class);
+
+    private final UserPointMapper userPointMapper = mock(UserPointMapper.class);
+
+    private PointLedgerWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        writer = new PointLedgerWriter();
+        ReflectionTestUtils.setField(writer, "pointDetailMapper", pointDetailMapper);
+        ReflectionTestUtils.setField(writer, "pointRollupService", pointRollupService);
+        ReflectionTestUtils.setField(writer, "userPointMapper", userPointMapper);
+    }
+
+    @Test
+    public void replayedEntriesAreNotInsertedOrRolledUpAgain() {
+        // 上次已提交但未 ACK 的 a，以及新的 b
+        when(pointDetailMapper.selectLedgerIds(anyCollection())).thenReturn(List.of("a"));
+        when(pointDetailMapper.insertLedgerBatch(any())).thenReturn(1);
+
+        write(entry(1L, "a"), entry(2L, "b"));
+
+        verify(pointDetailMapper).insertLedgerBatch(argThat(details ->
+            details.size() == 1 && "b".equals(details.get(0).getLedgerId())));
+        verify(pointRollupService).apply(argThat(details ->
+            details.size() == 1 && "b".equals(details.get(0).getLedgerId())));
+        // 余额快照照常写回（同一快照重复写入无影响）
+        verify(userPointMapper, times(2)).updateBalances(any());
+    }
+
+    @Test
+    public void fullyReplayedBatchWritesNoDetails() {
+        when(pointDetailMapper.selectLedgerIds(anyCollection())).thenReturn(List.of("a", "b"));
+
+        write(entry(1L, "a"), entry(2L, "b"));
+
+        verify(pointDetailMapper, never()).insertLedgerBatch(any());
+        verify(pointRollupService, never()).apply(any());
+    }
+
+    @Test
+    public void entriesWithoutLedgerIdAreInserted() {
+        // 旧版本写入 Redis 的条目没有账本ID
+        when(pointDetailMapper.insertLedgerBatch(any())).thenReturn(1);
+
+        write(entry(1L, null));
+
+        verify(pointDetailMapper, never()).selectLedgerIds(anyCollection());
+        verify(pointRollupService).apply(argThat(details -> details.size() == 1));
+    }
+
+    @Test
+    public void concurrentlyWrittenEntryRollsBackTheBatch() {
+        // 查询时还不存在，插入时已被另一个写入方写入并被 IGNORE 跳过
+        when(pointDetailMapper.selectLedgerIds(anyCollection())).thenReturn(List.of());
+        when(pointDetailMapper.insertLedgerBatch(any())).thenReturn(1);
+
+        assertThrows(IllegalStateException.class, () -> write(entry(1L, "a"), entry(2L, "b")));
+        verify(pointRollupService, never()).apply(any());
+    }
+
+    private void write(String... entries) {
+        ReflectionTestUtils.invokeMethod(writer, "write", List.of(entries));
+    }
+
+    private String entry(Long userId, String ledgerId) {
+        PointDetail detail = PointDetail.builder()
+            .userId(userId)
+            .points(10)
+            .type(0)
+            .ledgerId(ledgerId)
+            .build();
+        JSONObject event = new JSONObject();
+        event.put("detail", JSON.toJSONString(detail));
+        event.put("pointsType", 0);
+        event.put("balance", List.of(0, 0, 0, 0, 90));
+        return event.toJSONString();
+    }
+}
@@ -0,0 +1,104 @@
+package com.novelhub.service;
+
+import com.novelhub.entity.PointDetail;
+import com.novelhub.entity.UserPoint;
+import com.novelhub.mapper.UserPointMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PointService MySQL 扣减测试（points.balance.enabled=false）：
+ * 积分类型与剩余总额取自 debit 语句带回的结果、条件 UPDATE 不命中即失败（不重试、不写明细）；
+ * SQL 本身的拆分与并发不透支见 UserPointMapperDebitTest
+ */
+public class PointServiceDebitTest {
+
+    private static final Long USER_ID = 1L;
+
+    private final UserPointMapper userPointMapper = mock(UserPointMapper.class);
+
+    private final PointLedgerAppender pointLedgerAppender = mock(PointLedgerAppender.class);
+
+    // 已提交的明细（分组事务内 balanceUpdate 返回 true 的请求）
+    private final List<PointDetail> appended = new ArrayList<>();
+
+    private PointService pointService;
+
+    @BeforeEach
+    public void setUp() {
+        pointService = new PointService();
+        ReflectionTestUtils.setField(pointService, "userPointMapper", userPointMapper);
+        ReflectionTestUtils.setField(pointService, "pointLedgerAppender", pointLedgerAppender);
+        ReflectionTestUtils.setField(pointService, "balanceStoreEnabled", false);
+
+        // 分组提交：在调用线程上直接执行余额更新
+        when(pointLedgerAppender.append(any(), any())).thenAnswer(invocation -> {
+            boolean applied = invocation.<BooleanSupplier>getArgument(1).getAsBoolean();
+            if (applied) {
+                synchronized (appended) {
+                    appended.add(invocation.getArgument(0));
+                }
+            }
+            return applied;
+        });
+    }
+
+    @Test
+    public void debitRecordsPointsTypeAndRemaining() {
+        UserPoint up = balance(10, 20, 30);
+        when(userPointMapper.selectOne(any())).thenReturn(up);
+        when(userPointMapper.debit(USER_ID, 25)).thenReturn(1);
+        // 扣减后总余额 35，积分类型 2（订阅）
+        when(userPointMapper.selectDebitResult()).thenReturn(35L * 4 + 2);
+
+        Map<String, Object> result = pointService.consumePoints(USER_ID, 25, 1, "task-1", null);
+
+        assertEquals(true, result.get("success"));
+        assertEquals(2, result.get("pointsType"));
+        assertEquals(35, result.get("remainingPoints"));
+        assertEquals(1, appended.size());
+        assertEquals(2, appended.get(0).getPointsType());
+    }
+
+    @Test
+    public void conditionalUpdateMissFailsWithoutRetry() {
+        // 余额不足（或另一笔扣减已先提交），条件 UPDATE 不命中
+        UserPoint up = balance(10, 20, 30);
+        when(userPointMapper.selectOne(any())).thenReturn(up);
+        when(userPointMapper.debit(USER_ID, 50)).thenReturn(0);
+
+        Map<String, Object> result = pointService.consumePoints(USER_ID, 50, 1, "task-1", null);
+
+        assertEquals(false, result.get("success"));
+        assertEquals("Insufficient points", result.get("message"));
+        verify(userPointMapper, times(1)).debit(USER_ID, 50);
+        verify(userPointMapper, never()).selectDebitResult();
+        assertTrue(appended.isEmpty());
+    }
+
+    private UserPoint balance(int free, int subLeft, int fixed) {
+        return UserPoint.builder()
+            .userId(USER_ID)
+            .freePoints(free)
+            .subPointsLeft(subLeft)
+            .points(fixed)
+            .fixedPoints(fixed)
+            .subPoints(subLeft)
+            .build();
+    }
+}
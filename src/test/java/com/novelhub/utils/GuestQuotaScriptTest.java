@@ -0,0 +1,113 @@
+package com.novelhub.utils;
+
+import com.novelhub.service.BusinessService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+/**
+ * 访客每日额度 Lua 脚本测试（需要本地 Redis，不可达时跳过）：
+ * 达到上限后拒绝且不再增加、首次写入时设置到午夜的过期时间、跨午夜后按新日期重新计数
+ */
+public class GuestQuotaScriptTest {
+
+    private LocalRedis redis;
+
+    private RedisUtil redisUtil;
+
+    private String key;
+
+    @BeforeEach
+    public void setUp() {
+        redis = LocalRedis.connectOrSkip();
+        redisUtil = redis.redisUtil();
+        key = "test:guest_usage:" + UUID.randomUUID();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (redis != null) {
+            redis.redisTemplate().delete(redis.redisTemplate().keys(key + "*"));
+            redis.close();
+        }
+    }
+
+    @Test
+    public void rejectsAtLimitWithoutIncrementing() {
+        assertArrayEquals(new long[]{1, 1}, redisUtil.incrementWithLimitUntilMidnight(key, 3));
+        assertArrayEquals(new long[]{1, 2}, redisUtil.incrementWithLimitUntilMidnight(key, 3));
+        assertArrayEquals(new long[]{1, 3}, redisUtil.incrementWithLimitUntilMidnight(key, 3));
+        assertArrayEquals(new long[]{0, 3}, redisUtil.incrementWithLimitUntilMidnight(key, 3));
+        assertArrayEquals(new long[]{0, 3}, redisUtil.incrementWithLimitUntilMidnight(key, 3));
+
+        assertEquals(3, redisUtil.get(key, Integer.class));
+    }
+
+    @Test
+    public void expiresAtMidnight() {
+        redisUtil.incrementWithLimitUntilMidnight(key, 3);
+
+        long ttl = redis.redisTemplate().getExpire(key, TimeUnit.SECONDS);
+        assertTrue(ttl > 0, "TTL set on first increment: " + ttl);
+        assertTrue(ttl <= redisUtil.getSecondsUntilMidnight() + 1, "TTL not beyond midnight: " + ttl);
+    }
+
+    @Test
+    public void counterWithoutTtlGetsOne() {
+        // 旧版本 INCR 后 EXPIRE 失败留下的永久计数器
+        redis.redisTemplate().opsForValue().set(key, 1);
+
+        assertArrayEquals(new long[]{1, 2}, redisUtil.incrementWithLimitUntilMidnight(key, 3));
+        assertTrue(redis.redisTemplate().getExpire(key, TimeUnit.SECONDS) > 0);
+    }
+
+    @Test
+    public void expiredCounterStartsOver() throws InterruptedException {
+        redisUtil.incrementWithLimitUntilMidnight(key, 1);
+        assertArrayEquals(new long[]{0, 1}, redisUtil.incrementWithLimitUntilMidnight(key, 1));
+
+        // 午夜过期
+        redis.redisTemplate().expire(key, 1, TimeUnit.MILLISECONDS);
+        Thread.sleep(20);
+
+        assertArrayEquals(new long[]{1, 1}, redisUtil.incrementWithLimitUntilMidnight(key, 1));
+    }
+
+    @Test
+    public void guestQuotaResetsAcrossMidnight() {
+        // BusinessService 的 key 带日期：跨午夜后使用新 key，前一天的用量不影响当天
+        RedisUtil clock = spy(redisUtil);
+        BusinessService businessService = new BusinessService();
+        ReflectionTestUtils.setField(businessService, "redisUtil", clock);
+        String fingerprint = key.substring("test:guest_usage:".length());
+        key = "guest_usage:" + fingerprint;
+
+        doReturn("2026-10-16").when(clock).getToday();
+        for (int i = 1; i <= 5; i++) {
+            Map<String, Object> result = businessService.recordGuestUsage(fingerprint, "demo-test");
+            assertEquals(true, result.get("success"));
+            assertEquals(i, result.get("usageCount"));
+        }
+        Map<String, Object> rejected = businessService.recordGuestUsage(fingerprint, "demo-test");
+        assertEquals(false, rejected.get("success"));
+        assertEquals(5, rejected.get("usageCount"));
+        assertEquals(0, rejected.get("remaining"));
+
+        doReturn("2026-10-17").when(clock).getToday();
+        Map<String, Object> nextDay = businessService.recordGuestUsage(fingerprint, "demo-test");
+        assertEquals(true, nextDay.get("success"));
+        assertEquals(1, nextDay.get("usageCount"));
+        assertEquals(4, nextDay.get("remaining"));
+    }
+}
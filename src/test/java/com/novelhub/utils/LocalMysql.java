@@ -0,0 +1,55 @@
+package com.novelhub.utils;
+
+import org.junit.jupiter.api.Assumptions;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * 本地 MySQL 测试连接（用于验证手写 SQL）
+ * 连接 MYSQL_TEST_URL（默认本机的独立库 novelhub_test）与 MYSQL_USERNAME / MYSQL_PASSWORD，不可达时跳过测试
+ */
+public class LocalMysql {
+
+    private final String url;
+
+    private final String username;
+
+    private final String password;
+
+    private LocalMysql(String url, String username, String password) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * Connect once, or skip the calling test when no MySQL is reachable
+     */
+    public static LocalMysql connectOrSkip() {
+        LocalMysql mysql = new LocalMysql(
+            env("MYSQL_TEST_URL", "jdbc:mysql://localhost:3306/novelhub_test?connectTimeout=2000"
+                + "&serverTimezone=Asia/Shanghai&allowPublicKeyRetrieval=true&useSSL=false"),
+            env("MYSQL_USERNAME", "test1"),
+            env("MYSQL_PASSWORD", "test1"));
+        try (Connection connection = mysql.connection()) {
+            connection.isValid(2);
+        } catch (SQLException e) {
+            Assumptions.abort("MySQL not reachable: " + e.getMessage());
+        }
+        return mysql;
+    }
+
+    /**
+     * Open a new connection (each caller owns and closes it)
+     */
+    public Connection connection() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+}
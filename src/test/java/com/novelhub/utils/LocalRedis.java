@@ -0,0 +1,71 @@
+package com.novelhub.utils;
+
+import com.novelhub.config.RedisConfig;
+import org.junit.jupiter.api.Assumptions;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+/**
+ * 本地 Redis 测试连接（用于验证 Lua 脚本）
+ * 连接 REDIS_HOST / REDIS_PORT 上的独立库 REDIS_TEST_DATABASE（默认 15），不可达时跳过测试
+ */
+public class LocalRedis implements AutoCloseable {
+
+    private final LettuceConnectionFactory connectionFactory;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final RedisUtil redisUtil;
+
+    private LocalRedis(LettuceConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        this.redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+        this.redisUtil = new RedisUtil();
+        ReflectionTestUtils.setField(redisUtil, "redisTemplate", redisTemplate);
+    }
+
+    /**
+     * Connect, or skip the calling test when no Redis is reachable
+     */
+    public static LocalRedis connectOrSkip() {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+            env("REDIS_HOST", "localhost"), Integer.parseInt(env("REDIS_PORT", "6379")));
+        configuration.setDatabase(Integer.parseInt(env("REDIS_TEST_DATABASE", "15")));
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration,
+            LettuceClientConfiguration.builder().commandTimeout(Duration.ofSeconds(2)).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.ping();
+        } catch (Exception e) {
+            connectionFactory.destroy();
+            Assumptions.abort("Redis not reachable: " + e.getMessage());
+        }
+        return new LocalRedis(connectionFactory);
+    }
+
+    public RedisTemplate<String, Object> redisTemplate() {
+        return redisTemplate;
+    }
+
+    public RedisUtil redisUtil() {
+        return redisUtil;
+    }
+
+    @Override
+    public void close() {
+        connectionFactory.destroy();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,118 @@
+package com.novelhub.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MpscRingBuffer 测试：满时拒绝、环绕后顺序、多生产者不丢不重
+ */
+public class MpscRingBufferTest {
+
+    @Test
+    public void offerFailsWhenFullAndSucceedsAfterDrain() {
+        // 容量向上取整为 2 的幂
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(1, buffer.drainTo(drained, 1));
+        assertEquals(List.of(0), drained);
+
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+
+        drained.clear();
+        assertEquals(4, buffer.drainTo(drained, 100));
+        assertEquals(List.of(1, 2, 3, 4), drained);
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.drainTo(drained, 100));
+    }
+
+    @Test
+    public void keepsFifoOrderAcrossWrapAround() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        List<Integer> drained = new ArrayList<>();
+        int next = 0;
+        // 每轮放 3 取 2，多次绕过数组末尾
+        for (int round = 0; round < 10; round++) {
+            while (buffer.offer(next)) {
+                next++;
+                if (buffer.size() == 3) {
+                    break;
+                }
+            }
+            buffer.drainTo(drained, 2);
+        }
+        buffer.drainTo(drained, Integer.MAX_VALUE);
+
+        assertEquals(next, drained.size());
+        for (int i = 0; i < drained.size(); i++) {
+            assertEquals(i, drained.get(i));
+        }
+    }
+
+    @Test
+    public void concurrentProducersLoseAndDuplicateNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 20000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int p = 0; p < producers; p++) {
+                long producer = p;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (long seq = 0; seq < perProducer; seq++) {
+                        long[] element = {producer, seq};
+                        while (!buffer.offer(element)) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+
+            // 单消费者：每个生产者的元素按序到达，且总数不多不少
+            long[] expected = new long[producers];
+            List<long[]> drained = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            int received = 0;
+            while (received < producers * perProducer && System.nanoTime() < deadline) {
+                drained.clear();
+                buffer.drainTo(drained, 256);
+                for (long[] element : drained) {
+                    assertEquals(expected[(int) element[0]]++, element[1]);
+                }
+                received += drained.size();
+            }
+
+            assertEquals(producers * perProducer, received);
+            for (long count : expected) {
+                assertEquals(perProducer, count);
+            }
+            assertTrue(buffer.isEmpty());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
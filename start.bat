@@ -9,7 +9,7 @@ call mvn clean package -DskipTests
 
 REM Run the application
 echo Starting application...
-java -jar target\stock.jar
+java -Djdk.httpclient.keepalive.timeout=60 -jar target\stock.jar
 
 pause
 